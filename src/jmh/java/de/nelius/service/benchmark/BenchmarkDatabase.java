@@ -0,0 +1,119 @@
+package de.nelius.service.benchmark;
+
+import de.nelius.service.entities.Address;
+import de.nelius.service.entities.Person;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import java.sql.PreparedStatement;
+import java.util.function.Function;
+
+/**
+ * In-memory H2 database with the service entities for benchmarks.
+ * <p>
+ * Sessions are bound with {@link ManagedSessionContext} like Dropwizard's {@link io.dropwizard.hibernate.UnitOfWork} does,
+ * so repositories can use {@link SessionFactory#getCurrentSession()}.
+ *
+ * @author Christian Nelius
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final SessionFactory sessionFactory;
+
+    public BenchmarkDatabase(String name) {
+        this.sessionFactory = new Configuration()
+                .addAnnotatedClass(Person.class)
+                .addAnnotatedClass(Address.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.jdbc.batch_size", "50")
+                .setProperty("hibernate.current_session_context_class", "managed")
+                .buildSessionFactory();
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Inserts persons and addresses with plain JDBC batches.
+     *
+     * @param rows number of rows per table
+     */
+    public void seed(int rows) {
+        inUnitOfWork(session -> {
+            session.doWork(connection -> {
+                try (PreparedStatement persons = connection.prepareStatement("insert into Person (forename, surname, birthDate) values (?, ?, ?)");
+                     PreparedStatement addresses = connection.prepareStatement("insert into Address (city, postCode, street, number) values (?, ?, ?, ?)")) {
+                    for (int i = 1; i <= rows; i++) {
+                        persons.setString(1, "forename" + i);
+                        persons.setString(2, "surname" + i % 1000);
+                        persons.setString(3, "1970-01-01");
+                        persons.addBatch();
+                        addresses.setString(1, "city" + i % 100);
+                        addresses.setString(2, String.valueOf(10000 + i % 90000));
+                        addresses.setString(3, "street" + i % 5000);
+                        addresses.setString(4, String.valueOf(i % 200));
+                        addresses.addBatch();
+                        if (i % SEED_BATCH_SIZE == 0) {
+                            persons.executeBatch();
+                            addresses.executeBatch();
+                        }
+                    }
+                    persons.executeBatch();
+                    addresses.executeBatch();
+                }
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Runs the function in a bound session and transaction.
+     */
+    public <R> R inUnitOfWork(Function<Session, R> function) {
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            session.beginTransaction();
+            R result = function.apply(session);
+            session.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * Runs the function in a bound read-only session without transaction and flush, like the GET methods do.
+     */
+    public <R> R inReadOnlySession(Function<Session, R> function) {
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            return function.apply(session);
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        sessionFactory.close();
+    }
+}
@@ -0,0 +1,89 @@
+package de.nelius.service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.nelius.service.entities.Person;
+import de.nelius.service.generic.resource.JacksonFormats;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU cost of writing and reading a list of persons in the formats of {@link JacksonFormats}, with and without gzip.
+ * <p>
+ * The payload size of every combination is printed once per trial, so the time can be weighed against the bytes on the wire.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityFormatBenchmark {
+
+    private static final int LIST_SIZE = 1000;
+
+    @Param({MediaType.APPLICATION_JSON, JacksonFormats.APPLICATION_SMILE, JacksonFormats.APPLICATION_CBOR})
+    private String format;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+    private List<Person> persons;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new JacksonFormats(Jackson.newObjectMapper()).getObjectMapper(MediaType.valueOf(format));
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Person.class));
+        listReader = objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Person.class));
+        persons = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            persons.add(person(i));
+        }
+        payload = write();
+        System.out.println("Payload of " + LIST_SIZE + " persons as " + format + (gzip ? " with gzip: " : ": ") + payload.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            listWriter.writeValue(output, persons);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<Person> read() throws IOException {
+        try (InputStream input = gzip ? new GZIPInputStream(new ByteArrayInputStream(payload)) : new ByteArrayInputStream(payload)) {
+            return listReader.readValue(input);
+        }
+    }
+
+    private static Person person(int id) {
+        Person person = new Person();
+        person.setId(String.valueOf(id));
+        person.setForename("forename" + id);
+        person.setSurname("surname" + id);
+        person.setBirthDate("1970-01-01");
+        person.setVersion(0L);
+        return person;
+    }
+}
@@ -0,0 +1,74 @@
+package de.nelius.service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.nelius.service.entities.Person;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of a single {@link Person} and of a list of persons
+ * with the Dropwizard {@link ObjectMapper}.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityJsonBenchmark {
+
+    private static final int LIST_SIZE = 1000;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final ObjectWriter personWriter = objectMapper.writerFor(Person.class);
+    private final ObjectReader personReader = objectMapper.readerFor(Person.class);
+    private final ObjectWriter listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Person.class));
+
+    private Person person;
+    private byte[] personJson;
+    private List<Person> persons;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        person = person(1);
+        personJson = personWriter.writeValueAsBytes(person);
+        persons = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            persons.add(person(i));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePerson() throws IOException {
+        return personWriter.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public Person deserializePerson() throws IOException {
+        return personReader.readValue(personJson);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] serializePersonList() throws IOException {
+        return listWriter.writeValueAsBytes(persons);
+    }
+
+    private static Person person(int id) {
+        Person person = new Person();
+        person.setId(String.valueOf(id));
+        person.setForename("forename" + id);
+        person.setSurname("surname" + id);
+        person.setBirthDate("1970-01-01");
+        return person;
+    }
+}
@@ -0,0 +1,63 @@
+package de.nelius.service.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.MetricRegistry;
+import de.nelius.service.security.JwtAuthenticator;
+import de.nelius.service.security.JwtFactory;
+import de.nelius.service.security.user.InMemoryUserProvider;
+import de.nelius.service.security.user.User;
+import io.dropwizard.auth.AuthenticationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JwtAuthenticator} with a warm token cache and with the cache disabled, so every call verifies the HMAC.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticatorBenchmark {
+
+    private static final String SECRET = "somesecret";
+    private static final String ISSUER = "http://localhost:8080";
+
+    private JwtAuthenticator cachedAuthenticator;
+    private JwtAuthenticator uncachedAuthenticator;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cachedAuthenticator = new JwtAuthenticator(jwtFactory(10000), new InMemoryUserProvider(), new MetricRegistry());
+        uncachedAuthenticator = new JwtAuthenticator(jwtFactory(0), new InMemoryUserProvider(), new MetricRegistry());
+        token = JWT.create().withSubject("simple-user").withIssuer(ISSUER)
+                .withExpiresAt(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    @Benchmark
+    public Optional<User> authenticateCached() throws AuthenticationException {
+        return cachedAuthenticator.authenticate(token);
+    }
+
+    @Benchmark
+    public Optional<User> authenticateUncached() throws AuthenticationException {
+        return uncachedAuthenticator.authenticate(token);
+    }
+
+    private static JwtFactory jwtFactory(long cacheMaxSize) {
+        JwtFactory jwtFactory = new JwtFactory();
+        jwtFactory.setSecret(SECRET);
+        jwtFactory.setIssuer(ISSUER);
+        jwtFactory.setCacheMaxSize(cacheMaxSize);
+        return jwtFactory;
+    }
+}
@@ -0,0 +1,75 @@
+package de.nelius.service.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.nelius.service.entities.Person;
+import de.nelius.service.generic.resource.JacksonFormats;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a {@link Person} with the former private mappers of the generic resources against the shared
+ * Dropwizard mapper, which has the Afterburner module registered, and its cached typed readers and writers.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMapperBenchmark {
+
+    private final ObjectMapper plainMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final ObjectMapper sharedMapper = Jackson.newObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final JacksonFormats formats = new JacksonFormats(sharedMapper);
+
+    private Person person;
+    private byte[] personJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        person = new Person();
+        person.setId("1");
+        person.setForename("forename");
+        person.setSurname("surname");
+        person.setBirthDate("1970-01-01");
+        person.setVersion(0L);
+        personJson = plainMapper.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] writePlainMapper() throws IOException {
+        return plainMapper.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] writeSharedMapper() throws IOException {
+        return sharedMapper.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] writeCachedWriter() throws IOException {
+        return formats.getWriter(MediaType.APPLICATION_JSON_TYPE, Person.class).writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public Person readPlainMapper() throws IOException {
+        return plainMapper.readValue(personJson, Person.class);
+    }
+
+    @Benchmark
+    public Person readSharedMapper() throws IOException {
+        return sharedMapper.readValue(personJson, Person.class);
+    }
+
+    @Benchmark
+    public Person readCachedReader() throws IOException {
+        return formats.getReader(MediaType.APPLICATION_JSON_TYPE, Person.class).readValue(personJson);
+    }
+}
@@ -0,0 +1,61 @@
+package de.nelius.service.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import de.nelius.service.security.ratelimit.RateLimit;
+import de.nelius.service.security.ratelimit.RateLimiter;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link RateLimiter} per request, the work the rate limit filter adds after resolving the limit of a method.
+ * <p>
+ * The limit is high enough that every request is allowed. One principal on four threads shows the contention on a single
+ * bucket, many principals the cache lookup of independent buckets.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int PRINCIPALS = 10000;
+
+    private RateLimiter rateLimiter;
+    private String[] principals;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setPermits(Integer.MAX_VALUE);
+        rateLimit.setPeriod(Duration.seconds(1));
+        rateLimiter = new RateLimiter("benchmark", rateLimit, PRINCIPALS, new MetricRegistry());
+        principals = new String[PRINCIPALS];
+        for (int i = 0; i < PRINCIPALS; i++) {
+            principals[i] = "user-" + i;
+        }
+    }
+
+    @Benchmark
+    public long onePrincipal() {
+        return rateLimiter.tryAcquire(principals[0]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long onePrincipalContended() {
+        return rateLimiter.tryAcquire(principals[0]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long manyPrincipals() {
+        return rateLimiter.tryAcquire(principals[ThreadLocalRandom.current().nextInt(PRINCIPALS)]);
+    }
+}
@@ -0,0 +1,54 @@
+package de.nelius.service.benchmark;
+
+import de.nelius.service.entities.Person;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.simple.PersonRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CRUDRepository#getAll()} of all persons in a read-write unit of work, which snapshots every entity and
+ * dirty checks it on commit, against a read-only session without transaction and flush.
+ * <p>
+ * Run with {@code -PjmhProfilers=gc} to compare the allocation per operation.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadOnlySessionBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private CRUDRepository<Person, String> personRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("readonly" + rows);
+        database.seed(rows);
+        personRepository = new PersonRepository(database.getSessionFactory());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Person> getAllReadWrite() {
+        return database.inUnitOfWork(session -> personRepository.getAll());
+    }
+
+    @Benchmark
+    public List<Person> getAllReadOnly() {
+        return database.inReadOnlySession(session -> personRepository.getAll());
+    }
+}
@@ -0,0 +1,104 @@
+package de.nelius.service.benchmark;
+
+import de.nelius.service.entities.Address;
+import de.nelius.service.entities.Person;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.generic.repository.Page;
+import de.nelius.service.generic.repository.SimpleCRUDRepository;
+import de.nelius.service.simple.PersonRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CRUDRepository} operations of {@link PersonRepository} and {@link SimpleCRUDRepository}
+ * against an in-memory H2 seeded with the given number of rows.
+ * <p>
+ * Every operation runs in its own session and transaction like a request with {@link io.dropwizard.hibernate.UnitOfWork}.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private CRUDRepository<Person, String> personRepository;
+    private CRUDRepository<Address, String> addressRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("repository" + rows);
+        database.seed(rows);
+        personRepository = new PersonRepository(database.getSessionFactory());
+        addressRepository = new SimpleCRUDRepository<>(Address.class, database.getSessionFactory());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Person personGetOne() {
+        return database.inUnitOfWork(session -> personRepository.getOne(randomId()));
+    }
+
+    @Benchmark
+    public Address addressGetOne() {
+        return database.inUnitOfWork(session -> addressRepository.getOne(randomId()));
+    }
+
+    @Benchmark
+    public Person personSave() {
+        Person person = new Person();
+        person.setForename("forename");
+        person.setSurname("surname");
+        return database.inUnitOfWork(session -> personRepository.save(person));
+    }
+
+    @Benchmark
+    public Address addressSave() {
+        Address address = new Address();
+        address.setCity("city");
+        address.setPostCode("12345");
+        return database.inUnitOfWork(session -> addressRepository.save(address));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public List<Person> personGetAll() {
+        return database.inUnitOfWork(session -> personRepository.getAll());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void personScrollAll(Blackhole blackhole) {
+        personRepository.scrollAll(blackhole::consume);
+    }
+
+    @Benchmark
+    public Page<Address, String> addressGetPage() {
+        return database.inUnitOfWork(session -> addressRepository.getPage(randomId(), 100));
+    }
+
+    private String randomId() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(1, rows + 1));
+    }
+}
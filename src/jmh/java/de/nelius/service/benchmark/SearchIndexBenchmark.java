@@ -0,0 +1,93 @@
+package de.nelius.service.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import de.nelius.service.generic.search.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency and memory of {@link SearchIndex} with synthetic persons of forename and surname.
+ * <p>
+ * Setup prints the heap used by the index, measured after a full GC, next to its own estimate. A prefix of one or two
+ * characters reads a large posting list, a word of three or more characters intersects the lists of its trigrams, two
+ * words intersect both. {@code update} replaces the document of a random person.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+    private static final String[] FORENAMES = {"Anna", "Ben", "Clara", "David", "Elias", "Emma", "Felix", "Hannah", "Jonas",
+            "Lea", "Leon", "Lina", "Luca", "Marie", "Max", "Mia", "Noah", "Paul", "Sophie", "Theo"};
+    private static final String[] SYLLABLES = {"ber", "mann", "m\u00fcl", "schu", "ler", "wag", "ner", "bau", "kel", "hof",
+            "fisch", "er", "zim", "mer", "rich", "ter", "klein", "wolf", "neu", "stein"};
+    private static final String[] QUERIES_PREFIX = {"m", "le", "s", "ba", "k"};
+    private static final String[] QUERIES_WORD = {"mann", "schul", "steinhof", "m\u00fclwag", "klein"};
+    private static final String[] QUERIES_WORDS = {"max mann", "an stein", "lea m\u00fcl", "sophie ber", "theo wolf"};
+
+    @Param({"1000000"})
+    private int entities;
+
+    private SearchIndex searchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        searchIndex = new SearchIndex("person", Arrays.asList("forename", "surname"), new MetricRegistry());
+        Random random = new Random(42);
+        for (int i = 0; i < entities; i++) {
+            searchIndex.put((long) i, person(random));
+        }
+        long used = usedHeap() - before;
+        System.out.printf("%n%d documents, heap %d MiB, estimated %d MiB%n", searchIndex.size(), used >> 20,
+                searchIndex.estimatedBytes() >> 20);
+    }
+
+    private static List<String> person(Random random) {
+        StringBuilder surname = new StringBuilder();
+        for (int j = 1 + random.nextInt(3); j > 0; j--) {
+            surname.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        surname.setCharAt(0, Character.toUpperCase(surname.charAt(0)));
+        return Arrays.asList(FORENAMES[random.nextInt(FORENAMES.length)], surname.toString());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public List<Object> prefix() {
+        return searchIndex.search(QUERIES_PREFIX[ThreadLocalRandom.current().nextInt(QUERIES_PREFIX.length)], SearchIndex.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Object> word() {
+        return searchIndex.search(QUERIES_WORD[ThreadLocalRandom.current().nextInt(QUERIES_WORD.length)], SearchIndex.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<Object> words() {
+        return searchIndex.search(QUERIES_WORDS[ThreadLocalRandom.current().nextInt(QUERIES_WORDS.length)], SearchIndex.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        searchIndex.put((long) random.nextInt(entities), person(new Random(random.nextLong())));
+    }
+}
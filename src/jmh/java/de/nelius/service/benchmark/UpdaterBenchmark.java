@@ -0,0 +1,51 @@
+package de.nelius.service.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.nelius.service.entities.Person;
+import de.nelius.service.generic.updater.JacksonUpdater;
+import de.nelius.service.generic.updater.MethodHandleUpdater;
+import de.nelius.service.generic.updater.Updater;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Updater} implementations for a PATCH body.
+ * <p>
+ * jacksonUpdaterMap is the former request path: the body is read into a {@link Map} and
+ * {@link JacksonUpdater} writes it back to a String before updating the entity.
+ *
+ * @author Christian Nelius
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdaterBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Updater jacksonUpdater = new JacksonUpdater(objectMapper);
+    private final Updater methodHandleUpdater = new MethodHandleUpdater(objectMapper);
+    private final byte[] patch = "{\"forename\":\"John\",\"surname\":\"Doe\",\"birthDate\":\"1970-01-01\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Person jacksonUpdaterMap() throws IOException {
+        return jacksonUpdater.update(new Person(), objectMapper.readValue(new ByteArrayInputStream(patch), Map.class));
+    }
+
+    @Benchmark
+    public Person jacksonUpdaterStream() {
+        return jacksonUpdater.update(new Person(), new ByteArrayInputStream(patch));
+    }
+
+    @Benchmark
+    public Person methodHandleUpdaterStream() {
+        return methodHandleUpdater.update(new Person(), new ByteArrayInputStream(patch));
+    }
+}
@@ -0,0 +1,153 @@
+package de.nelius.service.loadtest;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.nelius.service.ServiceConfiguration;
+import de.nelius.service.ServiceStarter;
+import de.nelius.service.security.JwtFactory;
+import io.dropwizard.configuration.YamlConfigurationFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.client.HttpClient;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test. Starts {@link ServiceStarter} against an in-memory H2, mints tokens with the configured
+ * {@link JwtFactory} secret and drives a mix of requests on /person and /address at a fixed rate.
+ * <p>
+ * Requests are scheduled at fixed intended start times and latency is measured from that time instead of the actual
+ * send time. A stalled service therefore shows up in the percentiles instead of silently lowering the request rate
+ * (coordinated omission).
+ * <p>
+ * Options are system properties, see {@link LoadTestOptions}. The report is written as JSON plus one HdrHistogram
+ * percentile distribution per operation.
+ *
+ * @author Christian Nelius
+ */
+public class LoadTest {
+
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        new ServiceStarter().run("server", options.getConfiguration());
+        HttpClient httpClient = new HttpClient();
+        httpClient.setMaxConnectionsPerDestination(options.getConnections());
+        httpClient.start();
+        LoadTestClient client = new LoadTestClient(httpClient, options.getBaseUrl(), token(options.getConfiguration()), objectMapper);
+        client.seed(options.getSeed());
+
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        Map<String, AtomicLong> errors = new LinkedHashMap<>();
+        for (String operation : client.operations()) {
+            histograms.put(operation, new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3));
+            errors.put(operation, new AtomicLong());
+        }
+
+        run(options, client, histograms, errors, options.getWarmupSeconds());
+        histograms.values().forEach(Histogram::reset);
+        errors.values().forEach(counter -> counter.set(0));
+        long started = System.nanoTime();
+        run(options, client, histograms, errors, options.getDurationSeconds());
+        long elapsed = System.nanoTime() - started;
+
+        report(options, histograms, errors, elapsed);
+        httpClient.stop();
+        System.exit(0);
+    }
+
+    /**
+     * Schedules requests at a fixed rate for the given duration and waits for all of them to complete.
+     */
+    private static void run(LoadTestOptions options, LoadTestClient client, Map<String, Histogram> histograms,
+                            Map<String, AtomicLong> errors, int seconds) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(options.getConnections());
+        long interval = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+        long start = System.nanoTime();
+        long requests = (long) options.getRate() * seconds;
+        for (long i = 0; i < requests; i++) {
+            long intendedStart = start + i * interval;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String operation = options.pickOperation();
+            executor.execute(() -> {
+                if (!client.execute(operation)) {
+                    errors.get(operation).incrementAndGet();
+                }
+                histograms.get(operation).recordValue(Math.min(System.nanoTime() - intendedStart, TimeUnit.MINUTES.toNanos(1)));
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    private static String token(String configuration) throws Exception {
+        try (InputStream input = LoadTest.class.getResourceAsStream("/" + configuration)) {
+            JwtFactory jwtFactory = new YamlConfigurationFactory<>(ServiceConfiguration.class, Validators.newValidator(), objectMapper, "dw")
+                    .build(path -> input, configuration).getJwtFactory();
+            return JWT.create().withSubject("simple-admin").withIssuer(jwtFactory.getIssuer())
+                    .withExpiresAt(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                    .sign(Algorithm.HMAC256(jwtFactory.getSecret()));
+        }
+    }
+
+    private static void report(LoadTestOptions options, Map<String, Histogram> histograms, Map<String, AtomicLong> errors,
+                               long elapsed) throws Exception {
+        File directory = new File(options.getReportDirectory());
+        directory.mkdirs();
+        String name = "loadtest-" + System.currentTimeMillis();
+
+        ObjectNode report = objectMapper.createObjectNode();
+        report.set("options", objectMapper.valueToTree(options));
+        Histogram total = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        ObjectNode operations = report.putObject("operations");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            total.add(entry.getValue());
+            operations.set(entry.getKey(), summary(entry.getValue(), errors.get(entry.getKey()).get(), elapsed));
+            try (PrintStream out = new PrintStream(new FileOutputStream(new File(directory,
+                    name + "-" + entry.getKey().replaceAll("[^a-zA-Z]+", "-") + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        report.set("total", summary(total, errors.values().stream().mapToLong(AtomicLong::get).sum(), elapsed));
+
+        File file = new File(directory, name + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report.get("total")));
+        System.out.println("Report written to " + file.getAbsolutePath());
+    }
+
+    /**
+     * Latency percentiles in milliseconds and throughput per second.
+     */
+    private static ObjectNode summary(Histogram histogram, long errors, long elapsed) {
+        ObjectNode summary = objectMapper.createObjectNode();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughput", histogram.getTotalCount() / (elapsed / 1e9));
+        summary.put("mean", histogram.getMean() / 1e6);
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+            summary.put("p" + percentile, histogram.getValueAtPercentile(percentile) / 1e6);
+        }
+        summary.put("max", histogram.getMaxValue() / 1e6);
+        return summary;
+    }
+}
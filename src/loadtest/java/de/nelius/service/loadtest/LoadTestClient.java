@@ -0,0 +1,144 @@
+package de.nelius.service.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Blocking client on top of a Jetty {@link HttpClient} for {@link LoadTest}. Keeps track of the ids of every resource,
+ * so GET, PATCH and DELETE target existing entities.
+ *
+ * @author Christian Nelius
+ */
+public class LoadTestClient {
+
+    private static final Map<String, String> BODIES = new HashMap<>();
+
+    static {
+        BODIES.put("/person", "{\"forename\":\"John\",\"surname\":\"Doe\",\"birthDate\":\"1970-01-01\"}");
+        BODIES.put("/address", "{\"city\":\"Berlin\",\"postCode\":\"10115\",\"street\":\"Invalidenstrasse\",\"number\":\"1\"}");
+    }
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String authorization;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Ids> ids = new HashMap<>();
+
+    public LoadTestClient(HttpClient httpClient, String baseUrl, String token, ObjectMapper objectMapper) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.authorization = "Bearer " + token;
+        this.objectMapper = objectMapper;
+        BODIES.keySet().forEach(resource -> ids.put(resource, new Ids()));
+    }
+
+    public List<String> operations() {
+        List<String> operations = new ArrayList<>();
+        for (String method : Arrays.asList("GET", "POST", "PATCH", "DELETE")) {
+            for (String resource : BODIES.keySet()) {
+                operations.add(method + " " + resource);
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Creates entities for every resource.
+     *
+     * @param count entities per resource
+     */
+    public void seed(int count) {
+        for (String resource : BODIES.keySet()) {
+            for (int i = 0; i < count; i++) {
+                execute("POST " + resource);
+            }
+        }
+    }
+
+    /**
+     * Executes the operation.
+     *
+     * @param operation method and resource like "GET /person"
+     * @return true if the service answered with a 2xx status
+     */
+    public boolean execute(String operation) {
+        int separator = operation.indexOf(' ');
+        String method = operation.substring(0, separator);
+        String resource = operation.substring(separator + 1);
+        Ids resourceIds = ids.get(resource);
+        try {
+            switch (method) {
+                case "POST":
+                    return create(resource, resourceIds);
+                case "GET":
+                    return request("GET", resource + "/" + resourceIds.random(), null).getStatus() < 300;
+                case "PATCH":
+                    return request("PATCH", resource + "/" + resourceIds.random(), BODIES.get(resource)).getStatus() < 300;
+                case "DELETE":
+                    String id = resourceIds.remove();
+                    return id != null && request("DELETE", resource + "/" + id, null).getStatus() < 300;
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean create(String resource, Ids resourceIds) throws Exception {
+        ContentResponse response = request("POST", resource, BODIES.get(resource));
+        if (response.getStatus() >= 300) {
+            return false;
+        }
+        resourceIds.add(objectMapper.readTree(response.getContent()).get("id").asText());
+        return true;
+    }
+
+    private ContentResponse request(String method, String path, String body) throws Exception {
+        Request request = httpClient.newRequest(baseUrl + path).method(method)
+                .header(HttpHeader.AUTHORIZATION, authorization)
+                .header(HttpHeader.ACCEPT, "application/json");
+        if (body != null) {
+            request.content(new StringContentProvider(body), "application/json");
+        }
+        return request.send();
+    }
+
+    /**
+     * Known ids of a resource. Deleted ids are removed by swapping with the last element.
+     */
+    private static class Ids {
+
+        private final List<String> values = new ArrayList<>();
+
+        private synchronized void add(String id) {
+            values.add(id);
+        }
+
+        private synchronized String random() {
+            return values.isEmpty() ? "0" : values.get(ThreadLocalRandom.current().nextInt(values.size()));
+        }
+
+        private synchronized String remove() {
+            if (values.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(values.size());
+            String id = values.get(index);
+            values.set(index, values.get(values.size() - 1));
+            values.remove(values.size() - 1);
+            return id;
+        }
+    }
+}
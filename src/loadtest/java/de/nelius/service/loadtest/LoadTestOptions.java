@@ -0,0 +1,144 @@
+package de.nelius.service.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Options of {@link LoadTest} read from system properties.
+ * <p>
+ * properties:
+ * <p>
+ * loadtest.configuration : configuration on the classpath : loadtest.yml
+ * loadtest.baseUrl : url of the started service : http://localhost:8080
+ * loadtest.rate : requests per second : 200
+ * loadtest.duration : measured seconds : 60
+ * loadtest.warmup : unmeasured seconds before the run : 10
+ * loadtest.connections : concurrent client threads : 64
+ * loadtest.seed : entities created per resource before the run : 1000
+ * loadtest.mix : weighted operations : GET /person:35,GET /address:35,POST /person:5,POST /address:5,...
+ * loadtest.reportDirectory : output directory : build/reports/loadtest
+ *
+ * @author Christian Nelius
+ */
+public class LoadTestOptions {
+
+    private static final String DEFAULT_MIX = "GET /person:35,GET /address:35,POST /person:5,POST /address:5,"
+            + "PATCH /person:8,PATCH /address:8,DELETE /person:2,DELETE /address:2";
+
+    private final String configuration;
+    private final String baseUrl;
+    private final int rate;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int connections;
+    private final int seed;
+    private final Map<String, Integer> mix;
+    private final String reportDirectory;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+
+    private LoadTestOptions(String configuration, String baseUrl, int rate, int durationSeconds, int warmupSeconds,
+                            int connections, int seed, Map<String, Integer> mix, String reportDirectory) {
+        this.configuration = configuration;
+        this.baseUrl = baseUrl;
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.connections = connections;
+        this.seed = seed;
+        this.mix = mix;
+        this.reportDirectory = reportDirectory;
+        this.operations = mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    public static LoadTestOptions fromSystemProperties() {
+        return new LoadTestOptions(
+                System.getProperty("loadtest.configuration", "loadtest.yml"),
+                System.getProperty("loadtest.baseUrl", "http://localhost:8080"),
+                Integer.getInteger("loadtest.rate", 200),
+                Integer.getInteger("loadtest.duration", 60),
+                Integer.getInteger("loadtest.warmup", 10),
+                Integer.getInteger("loadtest.connections", 64),
+                Integer.getInteger("loadtest.seed", 1000),
+                mix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                System.getProperty("loadtest.reportDirectory", "build/reports/loadtest"));
+    }
+
+    private static Map<String, Integer> mix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            weights.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Picks a random operation according to the weights of the mix.
+     *
+     * @return operation like "GET /person"
+     */
+    public String pickOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @JsonProperty
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    @JsonProperty
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @JsonProperty
+    public int getRate() {
+        return rate;
+    }
+
+    @JsonProperty
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @JsonProperty
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    @JsonProperty
+    public int getConnections() {
+        return connections;
+    }
+
+    @JsonProperty
+    public int getSeed() {
+        return seed;
+    }
+
+    @JsonProperty
+    public Map<String, Integer> getMix() {
+        return mix;
+    }
+
+    @JsonProperty
+    public String getReportDirectory() {
+        return reportDirectory;
+    }
+}
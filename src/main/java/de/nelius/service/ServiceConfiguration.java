@@ -1,18 +1,32 @@
 package de.nelius.service;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import de.nelius.service.database.DatabaseProfileFactory;
+import de.nelius.service.generic.changes.ChangeFeedFactory;
+import de.nelius.service.generic.repository.EntityCacheFactory;
+import de.nelius.service.generic.resource.UnitOfWorkExecutorFactory;
+import de.nelius.service.generic.search.SearchIndexFactory;
+import de.nelius.service.health.DbHealthFactory;
 import de.nelius.service.security.JwtFactory;
+import de.nelius.service.security.ratelimit.RateLimitFactory;
+import de.nelius.service.startup.StartupFactory;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Service configuration extends Dropwizards {@link Configuration}
  * <p>
  * Contains {@link DataSourceFactory} for datasource configuration and
- * {@link JwtFactory} for security configuration.
+ * {@link JwtFactory} for security configuration, {@link EntityCacheFactory} for the optional entity cache and
+ * {@link DatabaseProfileFactory} for connection pool and Hibernate tuning, {@link DbHealthFactory} for the database health check,
+ * {@link UnitOfWorkExecutorFactory} per resource running async, {@link StartupFactory} for the warmup and
+ * {@link RateLimitFactory} for the request limits per principal, {@link ChangeFeedFactory} for the change feeds and
+ * {@link SearchIndexFactory} for the search indexes.
  *
  * @author Christian Nelius
  */
@@ -26,6 +40,37 @@ public class ServiceConfiguration extends Configuration {
     @NotNull
     private JwtFactory jwtFactory;
 
+    @Valid
+    @NotNull
+    private EntityCacheFactory entityCacheFactory = new EntityCacheFactory();
+
+    @Valid
+    @NotNull
+    private DatabaseProfileFactory databaseProfileFactory = new DatabaseProfileFactory();
+
+    @Valid
+    @NotNull
+    private DbHealthFactory dbHealthFactory = new DbHealthFactory();
+
+    @Valid
+    @NotNull
+    private Map<String, UnitOfWorkExecutorFactory> unitOfWorkExecutorFactories = new HashMap<>();
+
+    @Valid
+    @NotNull
+    private StartupFactory startupFactory = new StartupFactory();
+
+    @Valid
+    @NotNull
+    private RateLimitFactory rateLimitFactory = new RateLimitFactory();
+
+    @Valid
+    @NotNull
+    private ChangeFeedFactory changeFeedFactory = new ChangeFeedFactory();
+
+    @Valid
+    @NotNull
+    private SearchIndexFactory searchIndexFactory = new SearchIndexFactory();
 
     @JsonProperty("database")
     public DataSourceFactory getDataSourceFactory() {
@@ -46,4 +91,84 @@ public class ServiceConfiguration extends Configuration {
     public void setJwtFactory(JwtFactory jwtFactory) {
         this.jwtFactory = jwtFactory;
     }
+
+    @JsonProperty("entityCache")
+    public EntityCacheFactory getEntityCacheFactory() {
+        return entityCacheFactory;
+    }
+
+    @JsonProperty("entityCache")
+    public void setEntityCacheFactory(EntityCacheFactory entityCacheFactory) {
+        this.entityCacheFactory = entityCacheFactory;
+    }
+
+    @JsonProperty("databaseProfile")
+    public DatabaseProfileFactory getDatabaseProfileFactory() {
+        return databaseProfileFactory;
+    }
+
+    @JsonProperty("databaseProfile")
+    public void setDatabaseProfileFactory(DatabaseProfileFactory databaseProfileFactory) {
+        this.databaseProfileFactory = databaseProfileFactory;
+    }
+
+    @JsonProperty("dbHealth")
+    public DbHealthFactory getDbHealthFactory() {
+        return dbHealthFactory;
+    }
+
+    @JsonProperty("dbHealth")
+    public void setDbHealthFactory(DbHealthFactory dbHealthFactory) {
+        this.dbHealthFactory = dbHealthFactory;
+    }
+
+    @JsonProperty("async")
+    public Map<String, UnitOfWorkExecutorFactory> getUnitOfWorkExecutorFactories() {
+        return unitOfWorkExecutorFactories;
+    }
+
+    @JsonProperty("async")
+    public void setUnitOfWorkExecutorFactories(Map<String, UnitOfWorkExecutorFactory> unitOfWorkExecutorFactories) {
+        this.unitOfWorkExecutorFactories = unitOfWorkExecutorFactories;
+    }
+
+    @JsonProperty("startup")
+    public StartupFactory getStartupFactory() {
+        return startupFactory;
+    }
+
+    @JsonProperty("startup")
+    public void setStartupFactory(StartupFactory startupFactory) {
+        this.startupFactory = startupFactory;
+    }
+
+    @JsonProperty("rateLimit")
+    public RateLimitFactory getRateLimitFactory() {
+        return rateLimitFactory;
+    }
+
+    @JsonProperty("rateLimit")
+    public void setRateLimitFactory(RateLimitFactory rateLimitFactory) {
+        this.rateLimitFactory = rateLimitFactory;
+    }
+
+    @JsonProperty("changeFeed")
+    public ChangeFeedFactory getChangeFeedFactory() {
+        return changeFeedFactory;
+    }
+
+    @JsonProperty("changeFeed")
+    public void setChangeFeedFactory(ChangeFeedFactory changeFeedFactory) {
+        this.changeFeedFactory = changeFeedFactory;
+    }
+
+    @JsonProperty("search")
+    public SearchIndexFactory getSearchIndexFactory() {
+        return searchIndexFactory;
+    }
+
+    @JsonProperty("search")
+    public void setSearchIndexFactory(SearchIndexFactory searchIndexFactory) {
+        this.searchIndexFactory = searchIndexFactory;
+    }
 }
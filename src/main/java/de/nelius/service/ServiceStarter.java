@@ -1,9 +1,27 @@
 package de.nelius.service;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import de.nelius.service.database.InstrumentedSessionFactoryFactory;
+import de.nelius.service.database.MigrateCommand;
+import de.nelius.service.database.VersionBackfill;
+import de.nelius.service.generic.changes.ChangeFeed;
+import de.nelius.service.generic.registry.EntityMetadata;
+import de.nelius.service.generic.registry.EntityRegistry;
 import de.nelius.service.generic.repository.CRUDRepository;
 import de.nelius.service.generic.repository.SimpleCRUDRepository;
 import de.nelius.service.generic.resource.CRUDResourceMapping;
+import de.nelius.service.generic.resource.CRUDResourceMetrics;
+import de.nelius.service.generic.resource.EntityTags;
+import de.nelius.service.generic.resource.InvalidQueryExceptionMapper;
+import de.nelius.service.generic.resource.JacksonFormats;
+import de.nelius.service.generic.resource.OptimisticLockExceptionMapper;
+import de.nelius.service.generic.resource.UnitOfWorkExecutor;
+import de.nelius.service.generic.resource.UnitOfWorkExecutorFactory;
+import de.nelius.service.generic.resource.UpdaterExceptionMapper;
+import de.nelius.service.generic.search.SearchIndex;
+import de.nelius.service.generic.updater.MethodHandleUpdater;
 import de.nelius.service.health.DbHealth;
 import de.nelius.service.entities.Address;
 import de.nelius.service.entities.Person;
@@ -11,8 +29,11 @@ import de.nelius.service.simple.PersonResource;
 import de.nelius.service.simple.PersonRepository;
 import de.nelius.service.security.user.InMemoryUserProvider;
 import de.nelius.service.security.JwtAuthenticator;
+import de.nelius.service.security.ratelimit.RateLimitFilter;
 import de.nelius.service.security.user.User;
 import de.nelius.service.security.user.UserAuthorizer;
+import de.nelius.service.startup.StartupReport;
+import de.nelius.service.startup.Warmup;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
@@ -20,7 +41,16 @@ import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.hibernate.cfg.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dropwizard {@link Application}. Configures resources, security and health.
@@ -29,13 +59,40 @@ import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
  */
 public class ServiceStarter extends Application<ServiceConfiguration> {
 
-    private final DbHealth dbHealth = new DbHealth();
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceStarter.class);
+
+    /**
+     * {@link javax.persistence.Entity} classes of the service, every entity except {@link Person} gets a generic resource.
+     */
+    private static final Class<?>[] ENTITY_CLASSES = {Person.class, Address.class};
+
+    /**
+     * Entities loaded per warmup iteration of a repository.
+     */
+    private static final int WARMUP_PAGE_SIZE = 10;
+
+    private final StartupReport startupReport = new StartupReport();
+
+    private JacksonFormats jacksonFormats;
+    private CRUDResourceMetrics crudResourceMetrics;
+    private DbHealth dbHealth;
+    private Warmup warmup;
+
+    private final InstrumentedSessionFactoryFactory sessionFactoryFactory = new InstrumentedSessionFactoryFactory();
+
+    private final EntityRegistry entityRegistry = EntityRegistry.of(ENTITY_CLASSES).exclude(Person.class);
 
     private final HibernateBundle<ServiceConfiguration> hibernateBundle =
-            new HibernateBundle<ServiceConfiguration>(Person.class, Address.class) {
+            new HibernateBundle<ServiceConfiguration>(entityRegistry.getEntityClasses(), sessionFactoryFactory) {
                 @Override
                 public DataSourceFactory getDataSourceFactory(ServiceConfiguration configuration) {
-                    return configuration.getDataSourceFactory();
+                    sessionFactoryFactory.setSlowQueryThreshold(configuration.getDatabaseProfileFactory().getSlowQueryThreshold());
+                    return configuration.getDatabaseProfileFactory().apply(configuration.getDataSourceFactory(), configuration.getServerFactory());
+                }
+
+                @Override
+                protected void configure(Configuration configuration) {
+                    sessionFactoryFactory.configureStatistics(configuration);
                 }
             };
 
@@ -45,17 +102,42 @@ public class ServiceStarter extends Application<ServiceConfiguration> {
 
     @Override
     public void initialize(Bootstrap<ServiceConfiguration> bootstrap) {
+        // class loading until now
+        startupReport.phase("jvm");
         bootstrap.setConfigurationSourceProvider(path -> getClass().getResourceAsStream("/" + path));
         bootstrap.addBundle(hibernateBundle);
+        bootstrap.addCommand(new MigrateCommand(entityRegistry.getEntityClasses()));
+        // shared by all resources and updaters, Dropwizard already registers the Afterburner module on it
         bootstrap.getObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        startupReport.phase("initialize");
     }
 
     @Override
     public void run(ServiceConfiguration configuration, Environment environment) {
+        // configuration parsing and the session factory of the Hibernate bundle
+        startupReport.phase("bundles");
+        startupReport.register(environment);
+        if ("update".equals(configuration.getDataSourceFactory().getProperties().get("hibernate.hbm2ddl.auto"))) {
+            VersionBackfill.run(hibernateBundle.getSessionFactory());
+        }
+        dbHealth = configuration.getDbHealthFactory().build(hibernateBundle.getSessionFactory(), environment);
+        warmup = configuration.getStartupFactory().buildWarmup(hibernateBundle.getSessionFactory(), environment);
+        environment.jersey().register(new InvalidQueryExceptionMapper());
+        environment.jersey().register(new OptimisticLockExceptionMapper());
+        environment.jersey().register(new UpdaterExceptionMapper());
+        jacksonFormats = new JacksonFormats(environment.getObjectMapper());
+        jacksonFormats.register(environment.jersey());
+        crudResourceMetrics = new CRUDResourceMetrics(environment.metrics());
+        environment.jersey().register(crudResourceMetrics);
+        startupReport.phase("environment");
         configureResourcesAsBasic(configuration, environment);
+        startupReport.phase("resources.basic");
         configureResourcesAsGeneric(configuration, environment);
+        startupReport.phase("resources.generic");
         configureSecurity(configuration, environment);
+        startupReport.phase("security");
         configureHealth(configuration, environment);
+        startupReport.phase("health");
     }
 
     /**
@@ -67,8 +149,19 @@ public class ServiceStarter extends Application<ServiceConfiguration> {
      */
     private void configureResourcesAsBasic(ServiceConfiguration configuration, Environment environment) {
         PersonRepository personRepository = new PersonRepository(hibernateBundle.getSessionFactory());
-        environment.jersey().register(new PersonResource(personRepository));
-        dbHealth.addRepository(personRepository);
+        CRUDRepository<Person, String> cachedPersonRepository = configuration.getEntityCacheFactory().decorate(Person.class, personRepository,
+                hibernateBundle.getSessionFactory(), environment.getObjectMapper(), environment.metrics());
+        ChangeFeed changeFeed = configuration.getChangeFeedFactory().build("person", environment);
+        SearchIndex searchIndex = configuration.getSearchIndexFactory().build("person", environment);
+        CRUDRepository<Person, String> publishingPersonRepository = configuration.getChangeFeedFactory().decorate(cachedPersonRepository,
+                hibernateBundle.getSessionFactory(), changeFeed);
+        environment.jersey().register(new PersonResource(
+                configuration.getSearchIndexFactory().decorate(Person.class, publishingPersonRepository, hibernateBundle.getSessionFactory(), searchIndex, warmup),
+                jacksonFormats, new MethodHandleUpdater(environment.getObjectMapper(), hibernateBundle.getSessionFactory()),
+                hibernateBundle.getSessionFactory(), unitOfWorkExecutor("person", configuration, environment),
+                new EntityTags<>(Person.class, hibernateBundle.getSessionFactory(), jacksonFormats), changeFeed, searchIndex));
+        dbHealth.addRepository("person", personRepository);
+        addWarmup("person", Person.class, cachedPersonRepository);
     }
 
     /**
@@ -81,34 +174,119 @@ public class ServiceStarter extends Application<ServiceConfiguration> {
      * @param environment
      */
     private void configureResourcesAsGeneric(ServiceConfiguration configuration, Environment environment) {
-        CRUDRepository<Address, String> addressRepository = new SimpleCRUDRepository<>(Address.class, hibernateBundle.getSessionFactory());
-        environment.jersey().getResourceConfig().registerResources(new CRUDResourceMapping<>("/address", Address.class, addressRepository).getResource());
+        Timer registration = environment.metrics().timer(MetricRegistry.name(EntityRegistry.class, "registration"));
+        long start = System.nanoTime();
+        List<EntityMetadata<?, Serializable>> entities = entityRegistry.getGenericEntities(hibernateBundle.getSessionFactory());
+        for (EntityMetadata<?, Serializable> entity : entities) {
+            try (Timer.Context ignored = registration.time()) {
+                configureResourceAsGeneric(entity, configuration, environment);
+            }
+        }
+        LOGGER.info("Registered {} generic resources in {} ms", entities.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Registers the {@link SimpleCRUDRepository} and {@link CRUDResourceMapping} of one entity and adds the repository to the health check.
+     * The resource runs on its {@link UnitOfWorkExecutor} if it is configured as async.
+     *
+     * @param entity
+     * @param configuration
+     * @param environment
+     */
+    private <T> void configureResourceAsGeneric(EntityMetadata<T, Serializable> entity, ServiceConfiguration configuration, Environment environment) {
+        SimpleCRUDRepository<T, Serializable> simpleRepository = new SimpleCRUDRepository<>(entity.getDomainClass(), hibernateBundle.getSessionFactory());
+        CRUDRepository<T, Serializable> repository = configuration.getEntityCacheFactory().decorate(entity.getDomainClass(),
+                simpleRepository, hibernateBundle.getSessionFactory(), environment.getObjectMapper(), environment.metrics());
+        ChangeFeed changeFeed = configuration.getChangeFeedFactory().build(entity.getName(), environment);
+        SearchIndex searchIndex = configuration.getSearchIndexFactory().build(entity.getName(), environment);
+        CRUDRepository<T, Serializable> publishingRepository = configuration.getChangeFeedFactory().decorate(repository,
+                hibernateBundle.getSessionFactory(), changeFeed);
+        environment.jersey().getResourceConfig().registerResources(new CRUDResourceMapping<>(entity,
+                configuration.getSearchIndexFactory().decorate(entity.getDomainClass(), publishingRepository, hibernateBundle.getSessionFactory(), searchIndex,
+                        warmup),
+                new MethodHandleUpdater(environment.getObjectMapper(), hibernateBundle.getSessionFactory()), hibernateBundle.getSessionFactory(),
+                configuration.getUnitOfWorkExecutorFactories().containsKey(entity.getName()) ? unitOfWorkExecutor(entity.getName(), configuration, environment) : null,
+                new EntityTags<>(entity.getDomainClass(), hibernateBundle.getSessionFactory(), jacksonFormats), jacksonFormats, changeFeed, searchIndex)
+                .getResource(crudResourceMetrics));
+        dbHealth.addRepository(entity.getName(), simpleRepository);
+        addWarmup(entity.getName(), entity.getDomainClass(), repository);
+    }
+
+    /**
+     * Adds a {@link Warmup} task for the request path of an entity: the named queries of a page, count, exists and
+     * getOne through the cache, and writing and reading an entity in every format of {@link JacksonFormats}.
+     *
+     * @param name
+     * @param domainClass
+     * @param repository
+     */
+    private <T, S extends Serializable> void addWarmup(String name, Class<T> domainClass, CRUDRepository<T, S> repository) {
+        warmup.add(name, () -> {
+            List<T> items = repository.getPage(null, WARMUP_PAGE_SIZE).getItems();
+            repository.count();
+            T entity = items.isEmpty() ? domainClass.newInstance() : items.get(0);
+            if (!items.isEmpty()) {
+                S id = (S) hibernateBundle.getSessionFactory().getPersistenceUnitUtil().getIdentifier(entity);
+                repository.exists(id);
+                repository.getOne(id);
+            }
+            for (MediaType mediaType : jacksonFormats.getMediaTypes()) {
+                byte[] bytes = jacksonFormats.getWriter(mediaType, domainClass).writeValueAsBytes(entity);
+                jacksonFormats.getReader(mediaType, domainClass).readValue(bytes);
+            }
+        });
+    }
+
+    /**
+     * Builds the pooled {@link UnitOfWorkExecutor} of a resource if it is configured as async, otherwise a direct one.
+     *
+     * @param resource
+     * @param configuration
+     * @param environment
+     * @return
+     */
+    private UnitOfWorkExecutor unitOfWorkExecutor(String resource, ServiceConfiguration configuration, Environment environment) {
+        UnitOfWorkExecutorFactory factory = configuration.getUnitOfWorkExecutorFactories().get(resource);
+        if (factory == null) {
+            return UnitOfWorkExecutor.direct(resource, hibernateBundle.getSessionFactory(), environment.metrics());
+        }
+        return factory.build(resource, hibernateBundle.getSessionFactory(), environment);
     }
 
     /**
      * Configures {@link JwtAuthenticator} for JWT support, {@link UserAuthorizer}
      * for simple role authorization and {@link InMemoryUserProvider} for example user mappings.
+     * {@link RateLimitFilter} limits the requests per principal if it is enabled.
      *
      * @param configuration
      * @param environment
      */
     private void configureSecurity(ServiceConfiguration configuration, Environment environment) {
+        JwtAuthenticator authenticator = new JwtAuthenticator(configuration.getJwtFactory(), new InMemoryUserProvider(), environment.metrics());
         environment.jersey()
                 .register(new AuthDynamicFeature(new OAuthCredentialAuthFilter.Builder<User>()
-                        .setAuthenticator(new JwtAuthenticator(configuration.getJwtFactory(), new InMemoryUserProvider()))
+                        .setAuthenticator(authenticator)
                         .setAuthorizer(new UserAuthorizer()).setPrefix("bearer").buildAuthFilter()));
         environment.jersey().register(RolesAllowedDynamicFeature.class);
+        RateLimitFilter rateLimitFilter = configuration.getRateLimitFactory().build(environment);
+        if (rateLimitFilter != null) {
+            environment.jersey().register(rateLimitFilter);
+        }
+        // no user has the subject, so the verified token is not cached and every iteration verifies it again
+        String token = configuration.getJwtFactory().sign("warmup", Duration.minutes(10));
+        warmup.add("jwt", () -> authenticator.authenticate(token));
     }
 
     /**
-     * Configures {@link DbHealth} as a simple database health check based on listing all {@link javax.persistence.Entity}.
-     * Uses {@link CRUDRepository} because of abstraction purposes.
+     * Configures {@link DbHealth} as a scheduled database health check probing a single page of every {@link javax.persistence.Entity}.
+     * Uses {@link CRUDRepository} because of abstraction purposes. {@link Warmup} reports unhealthy until the request path is warmed up.
      *
      * @param configuration
      * @param environment
      */
     private void configureHealth(ServiceConfiguration configuration, Environment environment) {
         environment.healthChecks().register("Database Health", dbHealth);
+        environment.healthChecks().register("Warmup", warmup);
     }
 
 }
@@ -0,0 +1,153 @@
+package de.nelius.service.database;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.server.AbstractServerFactory;
+import io.dropwizard.server.ServerFactory;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Optional;
+
+/**
+ * Configuration profile for connection pool and Hibernate session tuning.
+ * <p>
+ * properties:
+ * <p>
+ * databaseProfile.profile : DEVELOPMENT keeps the database configuration as it is, PRODUCTION tunes it : DEVELOPMENT
+ * databaseProfile.poolSize : max pool size in production : number of Jetty worker threads
+ * databaseProfile.statementCacheSize : cached prepared statements per connection in production : 200
+ * databaseProfile.batchSize : hibernate.jdbc.batch_size in production : 50
+ * databaseProfile.fetchSize : hibernate.jdbc.fetch_size in production : 100
+ * databaseProfile.statistics : collects Hibernate statistics for metrics : true
+ * databaseProfile.slowQueryThreshold : queries slower than this are counted and logged : 200 milliseconds
+ *
+ * @author Christian Nelius
+ */
+public class DatabaseProfileFactory {
+
+    public enum Profile {
+        DEVELOPMENT, PRODUCTION
+    }
+
+    @NotNull
+    @JsonProperty
+    private Profile profile = Profile.DEVELOPMENT;
+
+    @Min(1)
+    @JsonProperty
+    private Integer poolSize;
+
+    @Min(0)
+    @JsonProperty
+    private int statementCacheSize = 200;
+
+    @Min(1)
+    @JsonProperty
+    private int batchSize = 50;
+
+    @Min(1)
+    @JsonProperty
+    private int fetchSize = 100;
+
+    @JsonProperty
+    private boolean statistics = true;
+
+    @NotNull
+    @JsonProperty
+    private Duration slowQueryThreshold = Duration.milliseconds(200);
+
+    /**
+     * Applies the profile to the data source configuration. In production the pool is sized to the Jetty worker
+     * threads, so a request thread never waits for a connection, statements are cached per connection and
+     * hbm2ddl schema diffing at startup is turned off, run the migrate command instead. The JDBC metadata is still
+     * read at startup, without it Hibernate assumes the driver supports no batch updates and drops the batch size.
+     *
+     * @return the given data source factory
+     */
+    public DataSourceFactory apply(DataSourceFactory dataSourceFactory, ServerFactory serverFactory) {
+        dataSourceFactory.getProperties().put("hibernate.generate_statistics", String.valueOf(statistics));
+        if (profile != Profile.PRODUCTION) {
+            return dataSourceFactory;
+        }
+        int size = poolSize != null ? poolSize : workerThreads(serverFactory, dataSourceFactory.getMaxSize());
+        dataSourceFactory.setMaxSize(size);
+        dataSourceFactory.setMinSize(Math.min(dataSourceFactory.getMinSize(), size));
+        dataSourceFactory.setInitialSize(Math.min(dataSourceFactory.getInitialSize(), size));
+        if (statementCacheSize > 0 && !dataSourceFactory.getJdbcInterceptors().filter(i -> i.contains("StatementCache")).isPresent()) {
+            dataSourceFactory.setJdbcInterceptors(Optional.of(
+                    dataSourceFactory.getJdbcInterceptors().map(interceptors -> interceptors + ";").orElse("")
+                            + "StatementCache(prepared=true,callable=false,max=" + statementCacheSize + ")"));
+        }
+        dataSourceFactory.getProperties().put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        dataSourceFactory.getProperties().put("hibernate.jdbc.fetch_size", String.valueOf(fetchSize));
+        dataSourceFactory.getProperties().put("hibernate.order_inserts", "true");
+        dataSourceFactory.getProperties().put("hibernate.order_updates", "true");
+        dataSourceFactory.getProperties().put("hibernate.hbm2ddl.auto", "none");
+        return dataSourceFactory;
+    }
+
+    private static int workerThreads(ServerFactory serverFactory, int fallback) {
+        if (serverFactory instanceof AbstractServerFactory) {
+            return ((AbstractServerFactory) serverFactory).getMaxThreads();
+        }
+        return fallback;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(boolean statistics) {
+        this.statistics = statistics;
+    }
+
+    public Duration getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(Duration slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+}
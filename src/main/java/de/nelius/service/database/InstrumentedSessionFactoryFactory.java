@@ -0,0 +1,51 @@
+package de.nelius.service.database;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.internal.StatisticsInitiator;
+
+import java.util.List;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * {@link SessionFactoryFactory} that wraps the pooled data source with a {@link TimedManagedDataSource},
+ * so the time request threads wait for a connection is reported next to the pool gauges, and provides
+ * {@link InstrumentedStatistics} for {@link HibernateBundle#configure(Configuration)}.
+ *
+ * @author Christian Nelius
+ */
+public class InstrumentedSessionFactoryFactory extends SessionFactoryFactory {
+
+    private MetricRegistry metricRegistry;
+    private Duration slowQueryThreshold = Duration.milliseconds(200);
+
+    @Override
+    public SessionFactory build(HibernateBundle<?> bundle, Environment environment, PooledDataSourceFactory dbConfig,
+                                ManagedDataSource dataSource, List<Class<?>> entities) {
+        this.metricRegistry = environment.metrics();
+        return super.build(bundle, environment, dbConfig,
+                new TimedManagedDataSource(dataSource, metricRegistry.timer(name(ManagedDataSource.class, "connection-wait"))), entities);
+    }
+
+    /**
+     * Installs {@link InstrumentedStatistics} as Hibernate statistics. Has to be called from
+     * {@link HibernateBundle#configure(Configuration)}, which runs before the service registry is built.
+     */
+    public void configureStatistics(Configuration configuration) {
+        if (metricRegistry != null) {
+            configuration.getProperties().put(StatisticsInitiator.STATS_BUILDER, InstrumentedStatistics.factory(metricRegistry, slowQueryThreshold));
+        }
+    }
+
+    public void setSlowQueryThreshold(Duration slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+}
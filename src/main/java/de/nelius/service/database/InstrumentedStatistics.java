@@ -0,0 +1,74 @@
+package de.nelius.service.database;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.util.Duration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Hibernate statistics that additionally report queries, slow queries and session open/close to the {@link MetricRegistry}.
+ * <p>
+ * Installed through the hibernate.stats.factory setting and only called if hibernate.generate_statistics is enabled.
+ *
+ * @author Christian Nelius
+ */
+public class InstrumentedStatistics extends ConcurrentStatisticsImpl {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstrumentedStatistics.class);
+
+    private final long slowQueryThresholdMillis;
+    private final Meter queries;
+    private final Timer queryTime;
+    private final Meter slowQueries;
+    private final Meter sessionsOpened;
+    private final Meter sessionsClosed;
+
+    public InstrumentedStatistics(SessionFactoryImplementor sessionFactory, MetricRegistry metricRegistry, Duration slowQueryThreshold) {
+        super(sessionFactory);
+        this.slowQueryThresholdMillis = slowQueryThreshold.toMilliseconds();
+        this.queries = metricRegistry.meter(name(InstrumentedStatistics.class, "queries"));
+        this.queryTime = metricRegistry.timer(name(InstrumentedStatistics.class, "query-time"));
+        this.slowQueries = metricRegistry.meter(name(InstrumentedStatistics.class, "slow-queries"));
+        this.sessionsOpened = metricRegistry.meter(name(InstrumentedStatistics.class, "sessions-opened"));
+        this.sessionsClosed = metricRegistry.meter(name(InstrumentedStatistics.class, "sessions-closed"));
+    }
+
+    /**
+     * Creates a {@link StatisticsFactory} for the hibernate.stats.factory setting.
+     */
+    public static StatisticsFactory factory(MetricRegistry metricRegistry, Duration slowQueryThreshold) {
+        return sessionFactory -> new InstrumentedStatistics(sessionFactory, metricRegistry, slowQueryThreshold);
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        super.queryExecuted(hql, rows, time);
+        queries.mark();
+        queryTime.update(time, TimeUnit.MILLISECONDS);
+        if (time >= slowQueryThresholdMillis) {
+            slowQueries.mark();
+            LOGGER.warn("Slow query took {} ms and returned {} rows: {}", time, rows, hql);
+        }
+    }
+
+    @Override
+    public void openSession() {
+        super.openSession();
+        sessionsOpened.mark();
+    }
+
+    @Override
+    public void closeSession() {
+        super.closeSession();
+        sessionsClosed.mark();
+    }
+}
@@ -0,0 +1,84 @@
+package de.nelius.service.database;
+
+import de.nelius.service.ServiceConfiguration;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Updates or validates the database schema of the entities outside of the server start.
+ * <p>
+ * Run it before deploying with {@code java -jar DropwizardExampleService.jar migrate configuration.yml}, or with
+ * {@code --validate} to only compare the schema with the mapping. The server can then start with
+ * {@code hibernate.hbm2ddl.auto: none}, as the PRODUCTION database profile does, and skips the schema inspection.
+ * The update also backfills null versions, see {@link VersionBackfill}.
+ *
+ * @author Christian Nelius
+ */
+public class MigrateCommand extends ConfiguredCommand<ServiceConfiguration> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrateCommand.class);
+
+    private final List<Class<?>> entityClasses;
+
+    public MigrateCommand(List<Class<?>> entityClasses) {
+        super("migrate", "Updates or validates the database schema of the entities");
+        this.entityClasses = entityClasses;
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--validate")
+                .action(Arguments.storeTrue())
+                .dest("validate")
+                .help("only validates the schema against the mapping");
+    }
+
+    @Override
+    protected void run(Bootstrap<ServiceConfiguration> bootstrap, Namespace namespace, ServiceConfiguration configuration) {
+        DataSourceFactory dataSourceFactory = configuration.getDataSourceFactory();
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySettings(dataSourceFactory.getProperties())
+                .applySetting(AvailableSettings.DRIVER, dataSourceFactory.getDriverClass())
+                .applySetting(AvailableSettings.URL, dataSourceFactory.getUrl())
+                .applySetting(AvailableSettings.USER, dataSourceFactory.getUser())
+                .applySetting(AvailableSettings.PASS, dataSourceFactory.getPassword() == null ? "" : dataSourceFactory.getPassword())
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            entityClasses.forEach(sources::addAnnotatedClass);
+            Metadata metadata = sources.buildMetadata();
+            if (namespace.getBoolean("validate")) {
+                new SchemaValidator().validate(metadata, registry);
+                LOGGER.info("Schema of {} entities is valid", entityClasses.size());
+            } else {
+                new SchemaUpdate().setHaltOnError(true).execute(EnumSet.of(TargetType.DATABASE), metadata, registry);
+                try (SessionFactory sessionFactory = metadata.buildSessionFactory()) {
+                    VersionBackfill.run(sessionFactory);
+                }
+                LOGGER.info("Schema of {} entities is up to date", entityClasses.size());
+            }
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+}
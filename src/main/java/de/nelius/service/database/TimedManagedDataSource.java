@@ -0,0 +1,85 @@
+package de.nelius.service.database;
+
+import com.codahale.metrics.Timer;
+import io.dropwizard.db.ManagedDataSource;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * {@link ManagedDataSource} that times how long callers wait for a pooled connection.
+ *
+ * @author Christian Nelius
+ */
+public class TimedManagedDataSource implements ManagedDataSource {
+
+    private final ManagedDataSource dataSource;
+    private final Timer waitTime;
+
+    public TimedManagedDataSource(ManagedDataSource dataSource, Timer waitTime) {
+        this.dataSource = dataSource;
+        this.waitTime = waitTime;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try (Timer.Context ignored = waitTime.time()) {
+            return dataSource.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        try (Timer.Context ignored = waitTime.time()) {
+            return dataSource.getConnection(username, password);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(dataSource) ? iface.cast(dataSource) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(dataSource) || dataSource.isWrapperFor(iface);
+    }
+
+    @Override
+    public void start() throws Exception {
+        dataSource.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        dataSource.stop();
+    }
+}
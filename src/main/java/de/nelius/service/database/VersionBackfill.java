@@ -0,0 +1,48 @@
+package de.nelius.service.database;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sets the {@link javax.persistence.Version} attribute of rows without version to 0.
+ * <p>
+ * A version column added by a schema update is null in all existing rows, Hibernate can not increment it then and
+ * fails on every update of such a row. Run by the migrate command and at startup if hbm2ddl updates the schema.
+ *
+ * @author Christian Nelius
+ */
+public final class VersionBackfill {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VersionBackfill.class);
+
+    private VersionBackfill() {
+    }
+
+    /**
+     * @return number of updated rows of all versioned entities
+     */
+    public static int run(SessionFactory sessionFactory) {
+        int updated = 0;
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (EntityPersister persister : sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersisters().values()) {
+                if (persister.isVersioned()) {
+                    String version = persister.getPropertyNames()[persister.getVersionProperty()];
+                    int rows = session.createQuery("update " + persister.getEntityName() + " set " + version + " = 0 where "
+                            + version + " is null").executeUpdate();
+                    if (rows > 0) {
+                        LOGGER.info("Set version of {} {} rows to 0", rows, persister.getEntityName());
+                    }
+                    updated += rows;
+                }
+            }
+            transaction.commit();
+        }
+        return updated;
+    }
+}
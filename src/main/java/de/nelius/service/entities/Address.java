@@ -8,6 +8,10 @@ import javax.persistence.*;
  * @author Christian Nelius
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "address_city", columnList = "city"),
+        @Index(name = "address_post_code", columnList = "postCode")
+})
 public class Address {
 
     @Id
@@ -21,6 +25,8 @@ public class Address {
     private String street;
     @Column
     private String number;
+    @Version
+    private Long version;
 
     public String getId() {
         return id;
@@ -61,4 +67,12 @@ public class Address {
     public void setNumber(String number) {
         this.number = number;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -8,6 +8,19 @@ import javax.persistence.*;
  * @author Christian Nelius
  */
 @Entity
+@NamedQueries({
+        @NamedQuery(name = "Person.getAll", query = "from Person"),
+        @NamedQuery(name = "Person.firstPage", query = "from Person p order by p.id"),
+        @NamedQuery(name = "Person.nextPage", query = "from Person p where p.id > :after order by p.id"),
+        @NamedQuery(name = "Person.count", query = "select count(p) from Person p"),
+        @NamedQuery(name = "Person.exists", query = "select 1 from Person p where p.id = :id"),
+        @NamedQuery(name = "Person.version", query = "select p.version from Person p where p.id = :id"),
+        @NamedQuery(name = "Person.delete", query = "delete from Person p where p.id = :id"),
+        @NamedQuery(name = "Person.deleteVersion", query = "delete from Person p where p.id = :id and p.version = :version"),
+        @NamedQuery(name = "Person.deleteByIds", query = "delete from Person p where p.id in (:ids)"),
+        @NamedQuery(name = "Person.existingIds", query = "select p.id from Person p where p.id in (:ids)")
+})
+@Table(indexes = @Index(name = "person_surname", columnList = "surname"))
 public class Person {
 
     @Id
@@ -19,6 +32,8 @@ public class Person {
     private String surname;
     @Column
     private String birthDate;
+    @Version
+    private Long version;
 
     public String getId() {
         return id;
@@ -51,4 +66,12 @@ public class Person {
     public void setBirthDate(String birthDate) {
         this.birthDate = birthDate;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
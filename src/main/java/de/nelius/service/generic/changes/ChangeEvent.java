@@ -0,0 +1,63 @@
+package de.nelius.service.generic.changes;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Committed change of one entity published by {@link ChangeFeed}.
+ * <p>
+ * Carries only the id, consumers load the changed entities themselves, for example with a multi-get.
+ * The Server-Sent Events frame is written once when the event is published and shared by all subscribers.
+ *
+ * @author Christian Nelius
+ */
+public class ChangeEvent {
+
+    public enum Type {
+        SAVED, DELETED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Object id;
+    private final long timestamp;
+    private byte[] frame;
+
+    ChangeEvent(long sequence, Type type, Object id, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return position in the feed, sent as event id and resumed from with {@code Last-Event-ID}
+     */
+    @JsonIgnore
+    public long getSequence() {
+        return sequence;
+    }
+
+    @JsonProperty
+    public Type getType() {
+        return type;
+    }
+
+    @JsonProperty
+    public Object getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    byte[] getFrame() {
+        return frame;
+    }
+
+    void setFrame(byte[] frame) {
+        this.frame = frame;
+    }
+}
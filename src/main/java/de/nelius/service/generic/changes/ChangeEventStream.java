@@ -0,0 +1,126 @@
+package de.nelius.service.generic.changes;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Server-Sent Events stream of a {@link ChangeFeed}.
+ * <p>
+ * A client resuming with {@code Last-Event-ID} gets the events after it from the buffer, otherwise only new events.
+ * If the events after the id are not available anymore or the client falls more than the capacity behind, it gets a
+ * {@code reset} event and continues with new events, it should reload what it needs. A slow client only blocks its own
+ * stream, never the writers. Idle streams write a comment every heartbeat to detect closed connections.
+ * <p>
+ * The events are written as {@link ChunkedOutput} on a thread of the feed, a {@link javax.ws.rs.core.StreamingOutput}
+ * would be buffered by Jersey until the response is large enough to be committed.
+ *
+ * @author Christian Nelius
+ */
+public class ChangeEventStream implements Runnable {
+
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private static final int BATCH_SIZE = 256;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ChangeFeed changeFeed;
+    private final Long lastEventId;
+    private final ChunkedOutput<byte[]> output = new ChunkedOutput<>(byte[].class);
+
+    private ChangeEventStream(ChangeFeed changeFeed, Long lastEventId) {
+        this.changeFeed = changeFeed;
+        this.lastEventId = lastEventId;
+    }
+
+    /**
+     * Subscribes to the feed and starts the stream.
+     *
+     * @param lastEventId value of the {@code Last-Event-ID} header or null
+     * @return event stream or 503 if the feed has the maximum of subscribers
+     */
+    public static Response open(ChangeFeed changeFeed, String lastEventId) {
+        Long after = null;
+        if (lastEventId != null) {
+            try {
+                after = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                after = -1L;
+            }
+        }
+        if (!changeFeed.subscribe()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorMessage(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                            "Too many subscribers of " + changeFeed.getName() + " changes"))
+                    .build();
+        }
+        ChangeEventStream stream = new ChangeEventStream(changeFeed, after);
+        changeFeed.getExecutor().execute(stream);
+        return Response.ok(stream.output, TEXT_EVENT_STREAM)
+                .header("Cache-Control", "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .build();
+    }
+
+    @Override
+    public void run() {
+        try {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            long cursor;
+            if (lastEventId == null) {
+                cursor = changeFeed.getSequence();
+                batch.write(HEARTBEAT);
+            } else if (changeFeed.canResume(lastEventId)) {
+                cursor = lastEventId;
+            } else {
+                cursor = reset(batch);
+            }
+            long idleSince = System.currentTimeMillis();
+            while (!changeFeed.isClosed() && !output.isClosed()) {
+                List<ChangeEvent> events = changeFeed.read(cursor, BATCH_SIZE);
+                if (events == null) {
+                    cursor = reset(batch);
+                } else {
+                    for (ChangeEvent event : events) {
+                        batch.write(event.getFrame());
+                        cursor = event.getSequence();
+                    }
+                }
+                if (batch.size() == 0 && System.currentTimeMillis() - idleSince >= changeFeed.getHeartbeat()) {
+                    batch.write(HEARTBEAT);
+                }
+                if (batch.size() > 0) {
+                    output.write(batch.toByteArray());
+                    batch.reset();
+                    idleSince = System.currentTimeMillis();
+                } else {
+                    Thread.sleep(changeFeed.getPollInterval());
+                }
+            }
+        } catch (IOException e) {
+            // client closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            changeFeed.unsubscribe();
+            try {
+                output.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    private long reset(ByteArrayOutputStream batch) throws IOException {
+        long cursor = changeFeed.getSequence();
+        batch.write(("id: " + cursor + "\nevent: reset\ndata: {}\n\n").getBytes(StandardCharsets.UTF_8));
+        return cursor;
+    }
+}
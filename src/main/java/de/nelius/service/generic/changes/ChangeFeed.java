@@ -0,0 +1,191 @@
+package de.nelius.service.generic.changes;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Bounded lock-free ring buffer of the {@link ChangeEvent}s of one entity.
+ * <p>
+ * Publishing claims the next sequence with one increment and stores the event in its slot, it never waits for subscribers.
+ * Subscribers keep their own cursor and read the slots after it. A slot holding an older sequence is not published yet,
+ * a slot holding a newer one was overwritten: the subscriber fell more than the capacity behind and lost events.
+ * <p>
+ * Sequences start at the start time in microseconds, so event ids of an earlier run are never resumed after a restart.
+ * Published events are metered as {@code ChangeFeed.<entity>.published}, lost events of subscribers as {@code .resets}
+ * and open streams as {@code .subscribers}.
+ *
+ * @author Christian Nelius
+ */
+public class ChangeFeed {
+
+    private final String name;
+    private final AtomicReferenceArray<ChangeEvent> events;
+    private final int mask;
+    private final long start;
+    private final AtomicLong sequence;
+    private final ObjectWriter objectWriter;
+    private final int maximumSubscribers;
+    private final long pollInterval;
+    private final long heartbeat;
+    private final Executor executor;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Meter published;
+    private final Meter resets;
+    private volatile boolean closed;
+
+    /**
+     * The capacity of the {@link ChangeFeedFactory} is rounded up to a power of two.
+     *
+     * @param executor runs the streams of the subscribers
+     */
+    public ChangeFeed(String name, ChangeFeedFactory changeFeedFactory, Executor executor, ObjectMapper objectMapper,
+                      MetricRegistry metricRegistry) {
+        this.name = name;
+        this.executor = executor;
+        int size = Integer.highestOneBit(Math.max(2, changeFeedFactory.getCapacity()) - 1) << 1;
+        this.events = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.start = System.currentTimeMillis() * 1000;
+        this.sequence = new AtomicLong(start);
+        this.objectWriter = objectMapper.writerFor(ChangeEvent.class);
+        this.maximumSubscribers = changeFeedFactory.getMaximumSubscribers();
+        this.pollInterval = changeFeedFactory.getPollInterval().toMilliseconds();
+        this.heartbeat = changeFeedFactory.getHeartbeat().toMilliseconds();
+        this.published = metricRegistry.meter(name(ChangeFeed.class, name, "published"));
+        this.resets = metricRegistry.meter(name(ChangeFeed.class, name, "resets"));
+        metricRegistry.register(name(ChangeFeed.class, name, "subscribers"), (Gauge<Integer>) subscribers::get);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Publishes one event per id.
+     */
+    public void publish(ChangeEvent.Type type, Collection<?> ids) {
+        long timestamp = System.currentTimeMillis();
+        for (Object id : ids) {
+            ChangeEvent event = new ChangeEvent(sequence.incrementAndGet(), type, id, timestamp);
+            event.setFrame(frame(event));
+            events.set(index(event.getSequence()), event);
+        }
+        published.mark(ids.size());
+    }
+
+    private byte[] frame(ChangeEvent event) {
+        try {
+            return ("id: " + event.getSequence() + "\nevent: change\ndata: " + objectWriter.writeValueAsString(event) + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can not write change event of " + name, e);
+        }
+    }
+
+    /**
+     * Reads the events after the sequence as far as they are published.
+     *
+     * @param after sequence of the last event the subscriber has read
+     * @param limit maximum number of events
+     * @return events in order, empty if there are none, null if events after the sequence were overwritten
+     */
+    public List<ChangeEvent> read(long after, int limit) {
+        List<ChangeEvent> read = new ArrayList<>();
+        for (long next = after + 1; read.size() < limit; next++) {
+            ChangeEvent event = events.get(index(next));
+            if (event == null || event.getSequence() < next) {
+                break;
+            }
+            if (event.getSequence() > next) {
+                resets.mark();
+                return null;
+            }
+            read.add(event);
+        }
+        return read;
+    }
+
+    /**
+     * @return true if all events after the sequence can still be replayed
+     */
+    public boolean canResume(long after) {
+        long last = sequence.get();
+        return after >= start && after <= last && last - after <= events.length();
+    }
+
+    /**
+     * @return sequence of the last published event, the cursor of a subscriber that only wants new events
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Registers a subscriber if the maximum is not reached, it has to call {@link #unsubscribe()} when its stream ends.
+     *
+     * @return false if the feed has the maximum of subscribers
+     */
+    public boolean subscribe() {
+        while (true) {
+            int current = subscribers.get();
+            if (current >= maximumSubscribers) {
+                return false;
+            }
+            if (subscribers.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return millis a subscriber waits before reading again if there are no new events
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @return millis after which an idle subscriber writes a comment to detect closed connections
+     */
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void unsubscribe() {
+        subscribers.decrementAndGet();
+    }
+
+    /**
+     * Ends the streams of all subscribers.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,126 @@
+package de.nelius.service.generic.changes;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.nelius.service.generic.repository.CRUDRepository;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration for {@link ChangeFeed} and {@link PublishingCRUDRepository}.
+ * <p>
+ * properties:
+ * <p>
+ * changeFeed.enabled : publishes saves and deletes as Server-Sent Events on [resource]/_changes : false
+ * changeFeed.capacity : events per entity kept for replay with Last-Event-ID, rounded up to a power of two : 4096
+ * changeFeed.maximumSubscribers : open streams per entity, each holds a thread of the feed : 64
+ * changeFeed.pollInterval : wait of an idle stream before it reads again : 100 milliseconds
+ * changeFeed.heartbeat : comment written by an idle stream to detect closed connections : 15 seconds
+ *
+ * @author Christian Nelius
+ */
+public class ChangeFeedFactory {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(2)
+    @Max(1 << 30)
+    @JsonProperty
+    private int capacity = 4096;
+
+    @Min(1)
+    @JsonProperty
+    private int maximumSubscribers = 64;
+
+    @NotNull
+    @JsonProperty
+    private Duration pollInterval = Duration.milliseconds(100);
+
+    @NotNull
+    @JsonProperty
+    private Duration heartbeat = Duration.seconds(15);
+
+    /**
+     * Builds the feed of an entity with a pool of one thread per subscriber. Its streams end when the server stops.
+     *
+     * @return feed or null if the change feed is disabled
+     */
+    public ChangeFeed build(String name, Environment environment) {
+        if (!enabled) {
+            return null;
+        }
+        ExecutorService executor = environment.lifecycle().executorService(name + "-changes-%d")
+                .minThreads(maximumSubscribers).maxThreads(maximumSubscribers).allowCoreThreadTimeOut(true).build();
+        ChangeFeed changeFeed = new ChangeFeed(name, this, executor, environment.getObjectMapper(), environment.metrics());
+        environment.lifecycle().addLifeCycleListener(new AbstractLifeCycle.AbstractLifeCycleListener() {
+            @Override
+            public void lifeCycleStopping(LifeCycle event) {
+                changeFeed.close();
+            }
+        });
+        return changeFeed;
+    }
+
+    /**
+     * Wraps the repository with a {@link PublishingCRUDRepository} if there is a feed.
+     *
+     * @param changeFeed feed of {@link #build(String, Environment)}
+     * @return publishing or given repository
+     */
+    public <T, S extends Serializable> CRUDRepository<T, S> decorate(CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory,
+                                                                    ChangeFeed changeFeed) {
+        if (changeFeed == null) {
+            return crudRepository;
+        }
+        return new PublishingCRUDRepository<>(crudRepository, sessionFactory, changeFeed);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getMaximumSubscribers() {
+        return maximumSubscribers;
+    }
+
+    public void setMaximumSubscribers(int maximumSubscribers) {
+        this.maximumSubscribers = maximumSubscribers;
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+}
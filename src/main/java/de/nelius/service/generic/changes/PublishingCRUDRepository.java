@@ -0,0 +1,124 @@
+package de.nelius.service.generic.changes;
+
+import de.nelius.service.generic.repository.AfterCommit;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.generic.repository.EntityQuery;
+import de.nelius.service.generic.repository.Page;
+import org.hibernate.SessionFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Decorator publishing the saves and deletes of a {@link CRUDRepository} to a {@link ChangeFeed}.
+ * <p>
+ * Events are published after the transaction committed, rolled back changes are never seen by subscribers.
+ * {@link #deleteByIds(Collection)} does not know which ids existed, it publishes all of them if any row was deleted.
+ *
+ * @author Christian Nelius
+ */
+public class PublishingCRUDRepository<T, S extends Serializable> implements CRUDRepository<T, S> {
+
+    private final CRUDRepository<T, S> crudRepository;
+    private final SessionFactory sessionFactory;
+    private final ChangeFeed changeFeed;
+
+    public PublishingCRUDRepository(CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory, ChangeFeed changeFeed) {
+        this.crudRepository = crudRepository;
+        this.sessionFactory = sessionFactory;
+        this.changeFeed = changeFeed;
+    }
+
+    public List<T> getAll() {
+        return crudRepository.getAll();
+    }
+
+    public Page<T, S> getPage(S after, int limit) {
+        return crudRepository.getPage(after, limit);
+    }
+
+    public void scrollAll(Consumer<? super T> consumer) {
+        crudRepository.scrollAll(consumer);
+    }
+
+    public List<T> find(EntityQuery query) {
+        return crudRepository.find(query);
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return crudRepository.findFields(query);
+    }
+
+    public T getOne(S id) {
+        return crudRepository.getOne(id);
+    }
+
+    public List<T> getMany(Collection<S> ids) {
+        return crudRepository.getMany(ids);
+    }
+
+    public Object getVersion(S id) {
+        return crudRepository.getVersion(id);
+    }
+
+    public long count() {
+        return crudRepository.count();
+    }
+
+    public boolean exists(S id) {
+        return crudRepository.exists(id);
+    }
+
+    public T save(T object) {
+        T saved = crudRepository.save(object);
+        publish(ChangeEvent.Type.SAVED, Collections.singletonList(sessionFactory.getCurrentSession().getIdentifier(saved)));
+        return saved;
+    }
+
+    public List<S> saveAll(List<T> objects) {
+        List<S> ids = crudRepository.saveAll(objects);
+        publish(ChangeEvent.Type.SAVED, new ArrayList<>(ids));
+        return ids;
+    }
+
+    public int delete(S id) {
+        int deleted = crudRepository.delete(id);
+        if (deleted > 0) {
+            publish(ChangeEvent.Type.DELETED, Collections.singletonList(id));
+        }
+        return deleted;
+    }
+
+    public int delete(S id, Object version) {
+        int deleted = crudRepository.delete(id, version);
+        if (deleted > 0) {
+            publish(ChangeEvent.Type.DELETED, Collections.singletonList(id));
+        }
+        return deleted;
+    }
+
+    public int deleteByIds(Collection<S> ids) {
+        int deleted = crudRepository.deleteByIds(ids);
+        if (deleted > 0) {
+            publish(ChangeEvent.Type.DELETED, new ArrayList<>(ids));
+        }
+        return deleted;
+    }
+
+    public List<S> deleteAll(Collection<S> ids) {
+        List<S> deleted = crudRepository.deleteAll(ids);
+        publish(ChangeEvent.Type.DELETED, new ArrayList<>(deleted));
+        return deleted;
+    }
+
+    private void publish(ChangeEvent.Type type, List<?> ids) {
+        if (!ids.isEmpty()) {
+            AfterCommit.run(sessionFactory, () -> changeFeed.publish(type, ids));
+        }
+    }
+}
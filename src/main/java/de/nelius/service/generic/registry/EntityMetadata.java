@@ -0,0 +1,93 @@
+package de.nelius.service.generic.registry;
+
+import org.hibernate.SessionFactory;
+
+import javax.persistence.metamodel.EntityType;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Metadata of an {@link javax.persistence.Entity} exposed as generic resource, computed once at startup.
+ * <p>
+ * Holds the resource name and path and the id type with a parser for ids given in paths and query parameters.
+ *
+ * @author Christian Nelius
+ */
+public class EntityMetadata<T, S extends Serializable> {
+
+    private final Class<T> domainClass;
+    private final String name;
+    private final String path;
+    private final Class<S> idType;
+    private final Function<String, S> idParser;
+
+    /**
+     * @param domainClass entity class
+     * @param path        path of the resource, its name is the path without slashes
+     * @param idType      type of the id, String or a type with a static valueOf(String) method
+     */
+    public EntityMetadata(Class<T> domainClass, String path, Class<S> idType) {
+        this.domainClass = domainClass;
+        this.path = path;
+        this.name = path.replaceAll("^/+|/+$", "");
+        this.idType = idType;
+        this.idParser = idParser(idType);
+    }
+
+    /**
+     * Reads the id type from the metamodel. The path is the lower case entity name.
+     */
+    public static <T> EntityMetadata<T, Serializable> of(Class<T> domainClass, SessionFactory sessionFactory) {
+        EntityType<T> entityType = sessionFactory.getMetamodel().entity(domainClass);
+        return new EntityMetadata<>(domainClass, "/" + entityType.getName().toLowerCase(Locale.ROOT),
+                (Class<Serializable>) entityType.getIdType().getJavaType());
+    }
+
+    private static <S> Function<String, S> idParser(Class<S> idType) {
+        if (idType == String.class) {
+            return idType::cast;
+        }
+        Method valueOf;
+        try {
+            valueOf = idType.getMethod("valueOf", String.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Id type " + idType.getName() + " has no valueOf(String) method", e);
+        }
+        return value -> {
+            try {
+                return idType.cast(valueOf.invoke(null, value));
+            } catch (InvocationTargetException e) {
+                throw new IllegalArgumentException("Invalid id " + value, e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    public Class<T> getDomainClass() {
+        return domainClass;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Class<S> getIdType() {
+        return idType;
+    }
+
+    /**
+     * @return id of the value
+     * @throws IllegalArgumentException if the value is no valid id
+     */
+    public S parseId(String value) {
+        return idParser.apply(value);
+    }
+}
@@ -0,0 +1,67 @@
+package de.nelius.service.generic.registry;
+
+import com.google.common.collect.ImmutableList;
+import org.hibernate.SessionFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registry of the {@link javax.persistence.Entity} classes of the service.
+ * <p>
+ * The entity classes are listed explicitly instead of scanning packages. Package scanning does not understand the class
+ * loader URLs of the one-jar the service is shipped as. The same classes are passed to the
+ * {@link io.dropwizard.hibernate.HibernateBundle}. Every entity that is not excluded for an own resource is exposed as
+ * generic resource with the {@link EntityMetadata} computed from the metamodel.
+ *
+ * @author Christian Nelius
+ */
+public class EntityRegistry {
+
+    private final ImmutableList<Class<?>> entityClasses;
+    private final Set<Class<?>> excluded = new HashSet<>();
+
+    private EntityRegistry(ImmutableList<Class<?>> entityClasses) {
+        this.entityClasses = entityClasses;
+    }
+
+    /**
+     * @param entityClasses all entity classes of the service
+     * @return registry of the entities
+     */
+    public static EntityRegistry of(Class<?>... entityClasses) {
+        return new EntityRegistry(ImmutableList.copyOf(entityClasses));
+    }
+
+    /**
+     * Excludes entities with an own resource from the generic resources. They stay mapped by Hibernate.
+     */
+    public EntityRegistry exclude(Class<?>... entityClasses) {
+        excluded.addAll(Arrays.asList(entityClasses));
+        return this;
+    }
+
+    /**
+     * @return all entity classes for the Hibernate mapping
+     */
+    public ImmutableList<Class<?>> getEntityClasses() {
+        return entityClasses;
+    }
+
+    /**
+     * @return metadata of all entities without an own resource
+     */
+    public List<EntityMetadata<?, Serializable>> getGenericEntities(SessionFactory sessionFactory) {
+        List<EntityMetadata<?, Serializable>> entities = new ArrayList<>();
+        for (Class<?> entityClass : entityClasses) {
+            if (!excluded.contains(entityClass)) {
+                entities.add(EntityMetadata.of(entityClass, sessionFactory));
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,42 @@
+package de.nelius.service.generic.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Runs work of repository decorators once the changes of the current session are committed.
+ *
+ * @author Christian Nelius
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs the work after the transaction of the current session committed, never if it is rolled back.
+     * Without an active transaction the work runs immediately.
+     */
+    public static void run(SessionFactory sessionFactory, Runnable work) {
+        Transaction transaction = sessionFactory.getCurrentSession().getTransaction();
+        if (!transaction.isActive()) {
+            work.run();
+            return;
+        }
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    work.run();
+                }
+            }
+        });
+    }
+}
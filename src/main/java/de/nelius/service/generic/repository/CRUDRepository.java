@@ -1,7 +1,10 @@
 package de.nelius.service.generic.repository;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * CRUD interface for abstract handling of entities.
@@ -13,10 +16,119 @@ public interface CRUDRepository<T, S extends Serializable> {
 
     List<T> getAll();
 
+    /**
+     * Keyset pagination ordered by id.
+     *
+     * @param after id of the last entity of the previous page or null for the first page
+     * @param limit maximum number of entities
+     * @return page with the cursor of the next page
+     */
+    Page<T, S> getPage(S after, int limit);
+
+    /**
+     * Scrolls over all entities in its own stateless session without holding the result in memory.
+     * Does not need a bound session, so it can run while the response is written.
+     *
+     * @param consumer called for every entity
+     */
+    void scrollAll(Consumer<? super T> consumer);
+
+    /**
+     * Finds entities by filters and sort order of an {@link EntityQuery}.
+     *
+     * @param query filters, sort order and limit
+     * @return matching entities
+     * @throws InvalidQueryException if the query uses unknown or unindexed attributes
+     */
+    List<T> find(EntityQuery query);
+
+    /**
+     * Finds entities like {@link #find(EntityQuery)} but selects only the fields of the query.
+     *
+     * @param query filters, sort order, fields and limit
+     * @return one map of field name to value per entity
+     * @throws InvalidQueryException if the query uses unknown or unindexed attributes
+     */
+    List<Map<String, Object>> findFields(EntityQuery query);
+
     T getOne(S id);
 
+    /**
+     * Loads the entities of all ids with batched in queries instead of one select per id.
+     *
+     * @param ids ids to load
+     * @return entities in the order of the ids, null for ids that do not exist
+     */
+    List<T> getMany(Collection<S> ids);
+
+    /**
+     * Loads only the {@link javax.persistence.Version} of the entity without hydrating it.
+     *
+     * @param id id of the entity
+     * @return version or null if the entity does not exist or is not versioned
+     */
+    Object getVersion(S id);
+
+    /**
+     * Counts all entities with one count statement.
+     *
+     * @return number of entities
+     */
+    long count();
+
+    /**
+     * Checks if an entity with the id exists without loading it.
+     *
+     * @param id id to check
+     * @return true if the entity exists
+     */
+    boolean exists(S id);
+
     T save(T object);
 
-    boolean delete(S id);
+    /**
+     * Saves all entities with JDBC batching. Flushes and clears the session afterwards,
+     * so callers should pass chunks of the configured batch size.
+     *
+     * @param objects entities to save or update
+     * @return ids of the saved entities in the same order
+     */
+    List<S> saveAll(List<T> objects);
+
+    /**
+     * Deletes the entity with one delete statement without loading it.
+     *
+     * @param id id to delete
+     * @return number of deleted rows, 0 if the id does not exist
+     */
+    int delete(S id);
+
+    /**
+     * Deletes the entity with one delete statement if it still has the given version. A bulk delete skips Hibernate's
+     * optimistic lock, so the version is part of the statement.
+     *
+     * @param id      id to delete
+     * @param version expected version, see {@link #getVersion(Serializable)}
+     * @return number of deleted rows, 0 if the id does not exist or its version changed
+     */
+    int delete(S id, Object version);
+
+    /**
+     * Deletes all entities with the given ids with one delete statement without loading them.
+     *
+     * @param ids ids to delete
+     * @return number of deleted rows
+     */
+    int deleteByIds(Collection<S> ids);
+
+    /**
+     * Deletes all entities with the given ids and reports which of them existed.
+     * Needs a select of the existing ids before the delete statement, use {@link #deleteByIds(Collection)}
+     * if the count is enough.
+     *
+     * @param ids ids to delete
+     * @return ids that existed and were deleted
+     */
+    List<S> deleteAll(Collection<S> ids);
 
 }
@@ -0,0 +1,236 @@
+package de.nelius.service.generic.repository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.nelius.service.generic.resource.MappingException;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import javax.transaction.Synchronization;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Read-through cache decorator for {@link CRUDRepository#getOne(Serializable)}.
+ * <p>
+ * Entities are cached as serialized JSON, so every caller gets its own instance and can not modify the cached state.
+ * {@link #save(Object)} and {@link #delete(Serializable)} invalidate the entry immediately and again after the
+ * transaction completes. A concurrent read may have loaded the old state before the commit, so every invalidation also
+ * increments a generation of the id's stripe. A read takes the generation before loading and drops its entry again if
+ * the generation changed until it was put.
+ *
+ * @author Christian Nelius
+ */
+public class CachingCRUDRepository<T, S extends Serializable> implements CRUDRepository<T, S> {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Class<T> domainClass;
+    private final CRUDRepository<T, S> crudRepository;
+    private final SessionFactory sessionFactory;
+    private final ObjectReader objectReader;
+    private final ObjectWriter objectWriter;
+    private final Cache<S, byte[]> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CachingCRUDRepository(Class<T> domainClass, CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory,
+                                 ObjectMapper objectMapper, EntityCacheFactory entityCacheFactory, MetricRegistry metricRegistry) {
+        this.domainClass = domainClass;
+        this.crudRepository = crudRepository;
+        this.sessionFactory = sessionFactory;
+        this.objectReader = objectMapper.readerFor(domainClass);
+        this.objectWriter = objectMapper.writerFor(domainClass);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(entityCacheFactory.getMaximumSize())
+                .expireAfterWrite(entityCacheFactory.getExpireAfterWrite().toMilliseconds(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        String prefix = name(CachingCRUDRepository.class, domainClass.getSimpleName());
+        metricRegistry.register(name(prefix, "hit-ratio"), (Gauge<Double>) () -> cache.stats().hitRate());
+        metricRegistry.register(name(prefix, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metricRegistry.register(name(prefix, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        metricRegistry.register(name(prefix, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(name(prefix, "size"), (Gauge<Long>) cache::size);
+    }
+
+    public List<T> getAll() {
+        return crudRepository.getAll();
+    }
+
+    public Page<T, S> getPage(S after, int limit) {
+        return crudRepository.getPage(after, limit);
+    }
+
+    public void scrollAll(Consumer<? super T> consumer) {
+        crudRepository.scrollAll(consumer);
+    }
+
+    public List<T> find(EntityQuery query) {
+        return crudRepository.find(query);
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return crudRepository.findFields(query);
+    }
+
+    public T getOne(S id) {
+        try {
+            byte[] cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return objectReader.readValue(cached);
+            }
+            long generation = generations.get(stripe(id));
+            T entity = crudRepository.getOne(id);
+            if (entity != null) {
+                put(id, entity, generation);
+            }
+            return entity;
+        } catch (IOException e) {
+            throw new MappingException(domainClass, e);
+        }
+    }
+
+    /**
+     * Reads cached entities and loads only the missing ones with one call of the decorated repository.
+     */
+    public List<T> getMany(Collection<S> ids) {
+        try {
+            List<T> entities = new ArrayList<>(ids.size());
+            List<S> missing = new ArrayList<>();
+            for (S id : ids) {
+                byte[] cached = cache.getIfPresent(id);
+                entities.add(cached == null ? null : objectReader.readValue(cached));
+                if (cached == null) {
+                    missing.add(id);
+                }
+            }
+            if (missing.isEmpty()) {
+                return entities;
+            }
+            long[] missingGenerations = new long[missing.size()];
+            for (int i = 0; i < missingGenerations.length; i++) {
+                missingGenerations[i] = generations.get(stripe(missing.get(i)));
+            }
+            Iterator<T> loaded = crudRepository.getMany(missing).iterator();
+            int next = 0;
+            for (int i = 0; i < entities.size(); i++) {
+                if (entities.get(i) == null) {
+                    S id = missing.get(next);
+                    T entity = loaded.next();
+                    if (entity != null) {
+                        put(id, entity, missingGenerations[next]);
+                        entities.set(i, entity);
+                    }
+                    next++;
+                }
+            }
+            return entities;
+        } catch (IOException e) {
+            throw new MappingException(domainClass, e);
+        }
+    }
+
+    public Object getVersion(S id) {
+        return crudRepository.getVersion(id);
+    }
+
+    public long count() {
+        return crudRepository.count();
+    }
+
+    public boolean exists(S id) {
+        return cache.getIfPresent(id) != null || crudRepository.exists(id);
+    }
+
+    public T save(T object) {
+        T saved = crudRepository.save(object);
+        invalidate(Collections.singletonList((S) sessionFactory.getCurrentSession().getIdentifier(saved)));
+        return saved;
+    }
+
+    public List<S> saveAll(List<T> objects) {
+        List<S> ids = crudRepository.saveAll(objects);
+        invalidate(ids);
+        return ids;
+    }
+
+    public int delete(S id) {
+        invalidate(Collections.singletonList(id));
+        return crudRepository.delete(id);
+    }
+
+    public int delete(S id, Object version) {
+        invalidate(Collections.singletonList(id));
+        return crudRepository.delete(id, version);
+    }
+
+    public int deleteByIds(Collection<S> ids) {
+        invalidate(ids);
+        return crudRepository.deleteByIds(ids);
+    }
+
+    public List<S> deleteAll(Collection<S> ids) {
+        invalidate(ids);
+        return crudRepository.deleteAll(ids);
+    }
+
+    /**
+     * Caches a loaded entity and removes it again if the id was invalidated since the generation was taken, the entity
+     * may be older than the commit of the invalidating transaction then.
+     */
+    private void put(S id, T entity, long generation) throws IOException {
+        cache.put(id, objectWriter.writeValueAsBytes(entity));
+        if (generations.get(stripe(id)) != generation) {
+            cache.invalidate(id);
+        }
+    }
+
+    private void invalidate(Collection<S> ids) {
+        bump(ids);
+        cache.invalidateAll(ids);
+        Transaction transaction = sessionFactory.getCurrentSession().getTransaction();
+        if (transaction.isActive()) {
+            transaction.registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    bump(ids);
+                    cache.invalidateAll(ids);
+                }
+            });
+        }
+    }
+
+    /**
+     * Increments the generations of the ids before their entries are removed.
+     */
+    private void bump(Collection<S> ids) {
+        for (S id : ids) {
+            generations.incrementAndGet(stripe(id));
+        }
+    }
+
+    private static int stripe(Object id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+}
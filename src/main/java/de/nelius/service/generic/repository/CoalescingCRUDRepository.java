@@ -0,0 +1,212 @@
+package de.nelius.service.generic.repository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.nelius.service.generic.resource.MappingException;
+import org.hibernate.SessionFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Single-flight decorator for {@link CRUDRepository#getOne(Serializable)}.
+ * <p>
+ * Concurrent reads of the same id share one load: the first request registers a future for the id and loads the entity,
+ * requests arriving while it is in flight wait for that future instead of querying the database. If requests wait, the
+ * leading request serializes the loaded entity once on its own thread and session, and every waiting request reads its
+ * own instance from these bytes, so no entity is touched outside its session. Only reads in read-only sessions are
+ * coalesced, reads of updates load their own entity.
+ * <p>
+ * Leading loads and coalesced reads are metered as {@code CoalescingCRUDRepository.<entity>.loads} and {@code .coalesced},
+ * {@code .coalesce-rate} is the share of coalesced reads over the last minute.
+ *
+ * @author Christian Nelius
+ */
+public class CoalescingCRUDRepository<T, S extends Serializable> implements CRUDRepository<T, S> {
+
+    private final Class<T> domainClass;
+    private final CRUDRepository<T, S> crudRepository;
+    private final SessionFactory sessionFactory;
+    private final ObjectReader objectReader;
+    private final ObjectWriter objectWriter;
+    private final ConcurrentMap<S, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Meter loads;
+    private final Meter coalesced;
+
+    public CoalescingCRUDRepository(Class<T> domainClass, CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory,
+                                    ObjectMapper objectMapper, MetricRegistry metricRegistry) {
+        this.domainClass = domainClass;
+        this.crudRepository = crudRepository;
+        this.sessionFactory = sessionFactory;
+        this.objectReader = objectMapper.readerFor(domainClass);
+        this.objectWriter = objectMapper.writerFor(domainClass);
+        String prefix = name(CoalescingCRUDRepository.class, domainClass.getSimpleName());
+        this.loads = metricRegistry.meter(name(prefix, "loads"));
+        this.coalesced = metricRegistry.meter(name(prefix, "coalesced"));
+        metricRegistry.register(name(prefix, "coalesce-rate"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(coalesced.getOneMinuteRate(), coalesced.getOneMinuteRate() + loads.getOneMinuteRate());
+            }
+        });
+        metricRegistry.register(name(prefix, "in-flight"), (Gauge<Integer>) inFlight::size);
+    }
+
+    public List<T> getAll() {
+        return crudRepository.getAll();
+    }
+
+    public Page<T, S> getPage(S after, int limit) {
+        return crudRepository.getPage(after, limit);
+    }
+
+    public void scrollAll(Consumer<? super T> consumer) {
+        crudRepository.scrollAll(consumer);
+    }
+
+    public List<T> find(EntityQuery query) {
+        return crudRepository.find(query);
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return crudRepository.findFields(query);
+    }
+
+    public T getOne(S id) {
+        if (!sessionFactory.getCurrentSession().isDefaultReadOnly()) {
+            return crudRepository.getOne(id);
+        }
+        while (true) {
+            InFlight load = new InFlight();
+            InFlight leader = inFlight.putIfAbsent(id, load);
+            if (leader == null) {
+                loads.mark();
+                return lead(id, load);
+            }
+            if (leader.follow()) {
+                coalesced.mark();
+                return read(leader);
+            }
+        }
+    }
+
+    /**
+     * Loads the entity and writes the bytes for the requests following the load.
+     */
+    private T lead(S id, InFlight load) {
+        T entity;
+        try {
+            entity = crudRepository.getOne(id);
+        } catch (RuntimeException e) {
+            inFlight.remove(id, load);
+            load.close();
+            load.bytes.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(id, load);
+        if (load.close()) {
+            try {
+                load.bytes.complete(entity == null ? null : objectWriter.writeValueAsBytes(entity));
+            } catch (JsonProcessingException e) {
+                load.bytes.completeExceptionally(new MappingException(domainClass, e));
+            }
+        }
+        return entity;
+    }
+
+    private T read(InFlight load) {
+        try {
+            byte[] bytes = load.bytes.join();
+            return bytes == null ? null : objectReader.readValue(bytes);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } catch (IOException e) {
+            throw new MappingException(domainClass, e);
+        }
+    }
+
+    public List<T> getMany(Collection<S> ids) {
+        return crudRepository.getMany(ids);
+    }
+
+    public Object getVersion(S id) {
+        return crudRepository.getVersion(id);
+    }
+
+    public long count() {
+        return crudRepository.count();
+    }
+
+    public boolean exists(S id) {
+        return crudRepository.exists(id);
+    }
+
+    public T save(T object) {
+        return crudRepository.save(object);
+    }
+
+    public List<S> saveAll(List<T> objects) {
+        return crudRepository.saveAll(objects);
+    }
+
+    public int delete(S id) {
+        return crudRepository.delete(id);
+    }
+
+    public int delete(S id, Object version) {
+        return crudRepository.delete(id, version);
+    }
+
+    public int deleteByIds(Collection<S> ids) {
+        return crudRepository.deleteByIds(ids);
+    }
+
+    public List<S> deleteAll(Collection<S> ids) {
+        return crudRepository.deleteAll(ids);
+    }
+
+    /**
+     * Load of one id. Requests register as followers until the leader closes the load, then they start a new one.
+     */
+    private static class InFlight {
+
+        private final CompletableFuture<byte[]> bytes = new CompletableFuture<>();
+        private final AtomicInteger followers = new AtomicInteger();
+
+        /**
+         * @return false if the leader already finished the load
+         */
+        private boolean follow() {
+            for (int count = followers.get(); count >= 0; count = followers.get()) {
+                if (followers.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if requests follow the load and wait for its bytes
+         */
+        private boolean close() {
+            return followers.getAndSet(-1) > 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.nelius.service.generic.repository;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.util.Duration;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * Configuration for {@link CachingCRUDRepository} and {@link CoalescingCRUDRepository}.
+ * <p>
+ * properties:
+ * <p>
+ * entityCache.enabled : wraps repositories with a read-through cache : false
+ * entityCache.coalesce : concurrent reads of the same entity share one load : true
+ * entityCache.maximumSize : max cached entities per entity class : 10000
+ * entityCache.expireAfterWrite : max lifetime of a cached entity : 10 minutes
+ *
+ * @author Christian Nelius
+ */
+public class EntityCacheFactory {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @JsonProperty
+    private boolean coalesce = true;
+
+    @Min(0)
+    @JsonProperty
+    private long maximumSize = 10000;
+
+    @NotNull
+    @JsonProperty
+    private Duration expireAfterWrite = Duration.minutes(10);
+
+    /**
+     * Wraps the repository with a {@link CoalescingCRUDRepository} and a {@link CachingCRUDRepository} around it,
+     * so misses of the cache are coalesced as well.
+     *
+     * @return decorated or given repository
+     */
+    public <T, S extends Serializable> CRUDRepository<T, S> decorate(Class<T> domainClass, CRUDRepository<T, S> crudRepository,
+                                                                    SessionFactory sessionFactory, ObjectMapper objectMapper,
+                                                                    MetricRegistry metricRegistry) {
+        CRUDRepository<T, S> repository = crudRepository;
+        if (coalesce) {
+            repository = new CoalescingCRUDRepository<>(domainClass, repository, sessionFactory, objectMapper, metricRegistry);
+        }
+        if (!enabled) {
+            return repository;
+        }
+        return new CachingCRUDRepository<>(domainClass, repository, sessionFactory, objectMapper, this, metricRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+}
@@ -0,0 +1,213 @@
+package de.nelius.service.generic.repository;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filter, sort and field projection for {@link CRUDRepository#find(EntityQuery)} and
+ * {@link CRUDRepository#findFields(EntityQuery)}.
+ * <p>
+ * Parsed from query parameters:
+ * <p>
+ * city=Berlin : equality filter, several values of the same parameter are combined with and
+ * postCode.gte=10000 : range filter, one of eq, gt, gte, lt, lte
+ * sort=-city,postCode : sort order, a leading minus sorts descending
+ * fields=id,city : selects only the given attributes
+ * limit=100 : max results, at most {@link Page#MAX_LIMIT}
+ * after=42 : only entities with a greater id, can not be combined with sort
+ * <p>
+ * The parameters ids of the multi-get and access_token of the OAuth filter are reserved and never filters.
+ *
+ * @author Christian Nelius
+ */
+public class EntityQuery {
+
+    public enum Operator {
+        EQ("="), GT(">"), GTE(">="), LT("<"), LTE("<=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    public static class Condition {
+
+        private final String attribute;
+        private final Operator operator;
+        private final String value;
+
+        public Condition(String attribute, Operator operator, String value) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public static class Order {
+
+        private final String attribute;
+        private final boolean ascending;
+
+        public Order(String attribute, boolean ascending) {
+            this.attribute = attribute;
+            this.ascending = ascending;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+    }
+
+    private static final Set<String> RESERVED = ImmutableSet.of("ids", "access_token");
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private final List<String> fields = new ArrayList<>();
+    private String after;
+    private int limit = Page.MAX_LIMIT;
+
+    /**
+     * Checks if the parameters contain a filter, sort or projection. Plain limit and after are keyset pagination.
+     */
+    public static boolean isQuery(Map<String, List<String>> parameters) {
+        return parameters.keySet().stream().anyMatch(key -> !key.equals("limit") && !key.equals("after") && !RESERVED.contains(key));
+    }
+
+    /**
+     * Parses query parameters.
+     *
+     * @throws InvalidQueryException if a parameter can not be parsed
+     */
+    public static EntityQuery parse(Map<String, List<String>> parameters) {
+        EntityQuery query = new EntityQuery();
+        for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+            String key = parameter.getKey();
+            List<String> values = parameter.getValue();
+            if (RESERVED.contains(key)) {
+                continue;
+            }
+            if (key.equals("sort")) {
+                for (String value : values) {
+                    for (String attribute : split(value)) {
+                        query.sort(attribute.startsWith("-") ? attribute.substring(1) : attribute, !attribute.startsWith("-"));
+                    }
+                }
+            } else if (key.equals("fields")) {
+                values.forEach(value -> split(value).forEach(query::field));
+            } else if (key.equals("limit")) {
+                query.limit(parseLimit(values.get(0)));
+            } else if (key.equals("after")) {
+                query.after(values.get(0));
+            } else {
+                int dot = key.lastIndexOf('.');
+                String attribute = dot < 0 ? key : key.substring(0, dot);
+                Operator operator = dot < 0 ? Operator.EQ : operator(key.substring(dot + 1));
+                values.forEach(value -> query.filter(attribute, operator, value));
+            }
+        }
+        return query;
+    }
+
+    public EntityQuery filter(String attribute, Operator operator, String value) {
+        conditions.add(new Condition(attribute, operator, value));
+        return this;
+    }
+
+    public EntityQuery sort(String attribute, boolean ascending) {
+        orders.add(new Order(attribute, ascending));
+        return this;
+    }
+
+    public EntityQuery field(String attribute) {
+        fields.add(attribute);
+        return this;
+    }
+
+    public EntityQuery after(String after) {
+        this.after = after;
+        return this;
+    }
+
+    public EntityQuery limit(int limit) {
+        this.limit = Math.min(limit, Page.MAX_LIMIT);
+        return this;
+    }
+
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    public List<String> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                parts.add(part.trim());
+            }
+        }
+        return parts;
+    }
+
+    private static Operator operator(String operator) {
+        try {
+            return Operator.valueOf(operator.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException("Unknown operator " + operator + ", use one of eq, gt, gte, lt, lte");
+        }
+    }
+
+    private static int parseLimit(String limit) {
+        try {
+            int value = Integer.parseInt(limit);
+            if (value < 1) {
+                throw new InvalidQueryException("limit must be positive");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new InvalidQueryException("limit must be a number");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package de.nelius.service.generic.repository;
+
+/**
+ * Exception occurs when an {@link EntityQuery} can not be parsed or uses attributes that are unknown or not indexed.
+ *
+ * @author Christian Nelius
+ */
+public class InvalidQueryException extends RuntimeException {
+
+    public InvalidQueryException(String cause) {
+        super(cause);
+    }
+
+}
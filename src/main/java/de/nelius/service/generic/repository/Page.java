@@ -0,0 +1,40 @@
+package de.nelius.service.generic.repository;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Keyset page of entities returned by {@link CRUDRepository#getPage(Serializable, int)}.
+ * <p>
+ * {@code next} is the id to pass as {@code after} for the following page and is null on the last page.
+ *
+ * @param <T> {@link javax.persistence.Entity}
+ * @author Christian Nelius
+ */
+public class Page<T, S extends Serializable> {
+
+    /**
+     * Upper bound for the page size requested by clients.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final S next;
+
+    public Page(List<T> items, S next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    @JsonProperty
+    public List<T> getItems() {
+        return items;
+    }
+
+    @JsonProperty
+    public S getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,154 @@
+package de.nelius.service.generic.repository;
+
+import com.google.common.primitives.Primitives;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates an {@link EntityQuery} into a parameterized HQL query for one entity class.
+ * <p>
+ * Filters and sort orders are only accepted on the id and on attributes with an index declared in
+ * {@link Table#indexes()}, so a client can not force full table scans. Values are converted to the attribute type
+ * and bound as parameters.
+ *
+ * @author Christian Nelius
+ */
+public class QueryTranslator<T> {
+
+    private final Class<T> domainClass;
+    private final String entityName;
+    private final String idName;
+    private final Map<String, Class<?>> attributes = new LinkedHashMap<>();
+    private final Set<String> indexed = new HashSet<>();
+
+    public QueryTranslator(Class<T> domainClass, SessionFactory sessionFactory) {
+        this.domainClass = domainClass;
+        EntityType<T> entityType = sessionFactory.getMetamodel().entity(domainClass);
+        this.entityName = entityType.getName();
+        this.idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        for (Attribute<? super T, ?> attribute : entityType.getSingularAttributes()) {
+            if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                attributes.put(attribute.getName(), Primitives.wrap(attribute.getJavaType()));
+            }
+        }
+        indexed.add(idName);
+        Table table = domainClass.getAnnotation(Table.class);
+        if (table != null) {
+            for (Index index : table.indexes()) {
+                String first = index.columnList().split(",")[0].trim().split(" ")[0];
+                attributes.keySet().stream().filter(first::equalsIgnoreCase).forEach(indexed::add);
+            }
+        }
+    }
+
+    /**
+     * Creates the query selecting whole entities.
+     */
+    public Query<T> entities(Session session, EntityQuery entityQuery) {
+        Map<String, Object> parameters = new HashMap<>();
+        String hql = "from " + entityName + " e" + where(entityQuery, parameters) + orderBy(entityQuery);
+        return bind(session.createQuery(hql, domainClass), parameters, entityQuery);
+    }
+
+    /**
+     * Runs the query selecting only the requested fields.
+     *
+     * @return one map of field name to value per row, in the order of the requested fields
+     */
+    public List<Map<String, Object>> fields(Session session, EntityQuery entityQuery) {
+        List<String> fields = entityQuery.getFields();
+        for (String field : fields) {
+            attribute(field);
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        String hql = "select " + String.join(", ", fields.stream().map(field -> "e." + field).toArray(String[]::new))
+                + " from " + entityName + " e" + where(entityQuery, parameters) + orderBy(entityQuery);
+        List<?> rows = bind(session.createQuery(hql), parameters, entityQuery).list();
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] values = fields.size() == 1 ? new Object[]{row} : (Object[]) row;
+            Map<String, Object> item = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                item.put(fields.get(i), values[i]);
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    private String where(EntityQuery entityQuery, Map<String, Object> parameters) {
+        List<String> predicates = new ArrayList<>();
+        for (EntityQuery.Condition condition : entityQuery.getConditions()) {
+            String parameter = "p" + parameters.size();
+            parameters.put(parameter, convert(condition.getAttribute(), indexedAttribute(condition.getAttribute()), condition.getValue()));
+            predicates.add("e." + condition.getAttribute() + " " + condition.getOperator().getSymbol() + " :" + parameter);
+        }
+        if (entityQuery.getAfter() != null) {
+            if (!entityQuery.getOrders().isEmpty()) {
+                throw new InvalidQueryException("after can not be combined with sort");
+            }
+            parameters.put("after", convert(idName, attribute(idName), entityQuery.getAfter()));
+            predicates.add("e." + idName + " > :after");
+        }
+        return predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+    }
+
+    private String orderBy(EntityQuery entityQuery) {
+        List<String> orders = new ArrayList<>();
+        for (EntityQuery.Order order : entityQuery.getOrders()) {
+            indexedAttribute(order.getAttribute());
+            orders.add("e." + order.getAttribute() + (order.isAscending() ? " asc" : " desc"));
+        }
+        orders.add("e." + idName);
+        return " order by " + String.join(", ", orders);
+    }
+
+    private <Q extends Query<?>> Q bind(Q query, Map<String, Object> parameters, EntityQuery entityQuery) {
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(entityQuery.getLimit());
+        return query;
+    }
+
+    private Class<?> attribute(String name) {
+        Class<?> type = attributes.get(name);
+        if (type == null) {
+            throw new InvalidQueryException(domainClass.getSimpleName() + " has no attribute " + name);
+        }
+        return type;
+    }
+
+    private Class<?> indexedAttribute(String name) {
+        Class<?> type = attribute(name);
+        if (!indexed.contains(name)) {
+            throw new InvalidQueryException(name + " is not indexed, filter or sort by one of " + indexed);
+        }
+        return type;
+    }
+
+    private static Object convert(String name, Class<?> type, String value) {
+        if (type == String.class) {
+            return value;
+        }
+        try {
+            return type.getMethod("valueOf", String.class).invoke(null, value);
+        } catch (InvocationTargetException e) {
+            throw new InvalidQueryException("Invalid value " + value + " for " + name);
+        } catch (ReflectiveOperationException e) {
+            throw new InvalidQueryException(name + " can not be filtered");
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package de.nelius.service.generic.repository;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.query.Query;
 
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Repository that offers CRUD functionality. Layer between Hibernate and {@link org.glassfish.jersey.server.model.Resource}.
+ * <p>
+ * All queries are built and registered as named queries once per repository, so HQL is neither concatenated
+ * nor parsed per request. Invalid queries fail at construction.
  *
  * @author Christian Nelius
  */
@@ -15,35 +30,197 @@ import static java.util.Objects.requireNonNull;
 
 public class SimpleCRUDRepository<T, S extends Serializable> implements CRUDRepository<T, S> {
 
+    private static final int SCROLL_FETCH_SIZE = 500;
+    private static final int GET_MANY_BATCH_SIZE = 500;
+
     private Class<T> domainClass;
     private SessionFactory sessionFactory;
+    private String idName;
+    private String getAllQuery;
+    private String firstPageQuery;
+    private String nextPageQuery;
+    private String scrollHql;
+    private String countQuery;
+    private String existsQuery;
+    private String versionQuery;
+    private String deleteQuery;
+    private String deleteVersionQuery;
+    private String deleteByIdsQuery;
+    private String existingIdsQuery;
+    private Map<String, String> findByQueries = new HashMap<>();
+    private QueryTranslator<T> queryTranslator;
 
     /**
-     * Creates a new DAO with a given session provider.
+     * Creates a new DAO with a given session provider and registers the named queries of the entity.
      *
      * @param sessionFactory a session provider
      */
     public SimpleCRUDRepository(Class<T> domainClass, SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
         this.domainClass = domainClass;
+        EntityType<T> entityType = sessionFactory.getMetamodel().entity(domainClass);
+        this.idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        this.queryTranslator = new QueryTranslator<>(domainClass, sessionFactory);
+        String entity = entityType.getName();
+        try (Session session = sessionFactory.openSession()) {
+            getAllQuery = namedQuery(session, "getAll", "from " + entity);
+            scrollHql = "from " + entity + " e order by e." + idName;
+            firstPageQuery = namedQuery(session, "firstPage", scrollHql);
+            nextPageQuery = namedQuery(session, "nextPage", "from " + entity + " e where e." + idName + " > :after order by e." + idName);
+            countQuery = namedQuery(session, "count", "select count(e) from " + entity + " e");
+            existsQuery = namedQuery(session, "exists", "select 1 from " + entity + " e where e." + idName + " = :id");
+            if (entityType.hasVersionAttribute()) {
+                String versionName = entityType.getSingularAttributes().stream().filter(SingularAttribute::isVersion).findFirst().get().getName();
+                versionQuery = namedQuery(session, "version", "select e." + versionName + " from " + entity + " e where e." + idName + " = :id");
+                deleteVersionQuery = namedQuery(session, "deleteVersion", "delete from " + entity + " e where e." + idName + " = :id and e."
+                        + versionName + " = :version");
+            }
+            deleteQuery = namedQuery(session, "delete", "delete from " + entity + " e where e." + idName + " = :id");
+            deleteByIdsQuery = namedQuery(session, "deleteByIds", "delete from " + entity + " e where e." + idName + " in (:ids)");
+            existingIdsQuery = namedQuery(session, "existingIds", "select e." + idName + " from " + entity + " e where e." + idName + " in (:ids)");
+            for (Attribute<? super T, ?> attribute : entityType.getSingularAttributes()) {
+                if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                    findByQueries.put(attribute.getName(), namedQuery(session, "findBy." + attribute.getName(),
+                            "from " + entity + " e where e." + attribute.getName() + " = :value"));
+                }
+            }
+        }
+    }
+
+    private String namedQuery(Session session, String name, String hql) {
+        String queryName = SimpleCRUDRepository.class.getSimpleName() + "." + domainClass.getSimpleName() + "." + name;
+        sessionFactory.addNamedQuery(queryName, session.createQuery(hql));
+        return queryName;
     }
 
     public List<T> getAll() {
-        return requireNonNull((Query<T>) sessionFactory.getCurrentSession().createQuery("from " + domainClass.getSimpleName())).list();
+        return sessionFactory.getCurrentSession().createNamedQuery(getAllQuery, domainClass).list();
+    }
+
+    /**
+     * Finds all entities with the given value of a basic attribute.
+     *
+     * @param field name of the attribute
+     * @param value value to compare with
+     * @return matching entities
+     */
+    public List<T> findBy(String field, Object value) {
+        String queryName = findByQueries.get(field);
+        if (queryName == null) {
+            throw new IllegalArgumentException(domainClass.getSimpleName() + " has no attribute " + field);
+        }
+        return sessionFactory.getCurrentSession().createNamedQuery(queryName, domainClass).setParameter("value", value).list();
+    }
+
+    public List<T> find(EntityQuery query) {
+        return queryTranslator.entities(sessionFactory.getCurrentSession(), query).list();
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return queryTranslator.fields(sessionFactory.getCurrentSession(), query);
+    }
+
+    public Page<T, S> getPage(S after, int limit) {
+        Query<T> query = after == null
+                ? sessionFactory.getCurrentSession().createNamedQuery(firstPageQuery, domainClass)
+                : sessionFactory.getCurrentSession().createNamedQuery(nextPageQuery, domainClass).setParameter("after", after);
+        List<T> items = query.setMaxResults(limit + 1).list();
+        if (items.size() <= limit) {
+            return new Page<>(items, null);
+        }
+        List<T> page = new ArrayList<>(items.subList(0, limit));
+        return new Page<>(page, (S) sessionFactory.getCurrentSession().getIdentifier(page.get(limit - 1)));
+    }
+
+    /**
+     * Uses the query string instead of the named query, the stateless session does not support its cache mode.
+     * The parsed plan is shared through the query plan cache.
+     */
+    public void scrollAll(Consumer<? super T> consumer) {
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             ScrollableResults results = session.createQuery(scrollHql, domainClass)
+                     .setFetchSize(SCROLL_FETCH_SIZE).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((T) results.get(0));
+            }
+        }
     }
 
     public T getOne(S id) {
         return sessionFactory.getCurrentSession().get(domainClass, requireNonNull(id));
     }
 
+    public List<T> getMany(Collection<S> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return sessionFactory.getCurrentSession().byMultipleIds(domainClass).withBatchSize(GET_MANY_BATCH_SIZE)
+                .multiLoad(new ArrayList<>(ids));
+    }
+
+    public Object getVersion(S id) {
+        if (versionQuery == null) {
+            return null;
+        }
+        return sessionFactory.getCurrentSession().createNamedQuery(versionQuery).setParameter("id", requireNonNull(id)).uniqueResult();
+    }
+
+    public long count() {
+        return sessionFactory.getCurrentSession().createNamedQuery(countQuery, Long.class).getSingleResult();
+    }
+
+    public boolean exists(S id) {
+        return !sessionFactory.getCurrentSession().createNamedQuery(existsQuery).setParameter("id", requireNonNull(id))
+                .setMaxResults(1).list().isEmpty();
+    }
+
     public T save(T object) {
         sessionFactory.getCurrentSession().saveOrUpdate(requireNonNull(object));
         return object;
     }
 
-    public boolean delete(S id) {
-        sessionFactory.getCurrentSession().delete(getOne(id));
-        return getOne(id) == null;
+    public List<S> saveAll(List<T> objects) {
+        Session session = sessionFactory.getCurrentSession();
+        List<S> ids = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            session.saveOrUpdate(requireNonNull(object));
+            ids.add((S) session.getIdentifier(object));
+        }
+        session.flush();
+        session.clear();
+        return ids;
+    }
+
+    public int delete(S id) {
+        return sessionFactory.getCurrentSession().createNamedQuery(deleteQuery).setParameter("id", id).executeUpdate();
+    }
+
+    /**
+     * Deletes without version check if the entity has no version attribute.
+     */
+    public int delete(S id, Object version) {
+        if (deleteVersionQuery == null) {
+            return delete(id);
+        }
+        return sessionFactory.getCurrentSession().createNamedQuery(deleteVersionQuery).setParameter("id", id)
+                .setParameter("version", version).executeUpdate();
+    }
+
+    public int deleteByIds(Collection<S> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return sessionFactory.getCurrentSession().createNamedQuery(deleteByIdsQuery).setParameterList("ids", ids).executeUpdate();
+    }
+
+    public List<S> deleteAll(Collection<S> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<S> existing = (List<S>) sessionFactory.getCurrentSession().createNamedQuery(existingIdsQuery)
+                .setParameterList("ids", ids).list();
+        deleteByIds(existing);
+        return existing;
     }
 
 }
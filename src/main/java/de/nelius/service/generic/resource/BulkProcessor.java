@@ -0,0 +1,202 @@
+package de.nelius.service.generic.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Throwables;
+import de.nelius.service.generic.repository.CRUDRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Processes bulk requests against a {@link CRUDRepository}.
+ * <p>
+ * The body is either a JSON array or newline delimited JSON. Every item is {@code {"save": {...}}} or
+ * {@code {"delete": "id"}}. Items are read one by one and consecutive operations of the same kind are passed to
+ * {@link CRUDRepository#saveAll(List)} or {@link CRUDRepository#deleteAll(java.util.Collection)} in chunks of the
+ * Hibernate JDBC batch size, so memory stays flat for large imports.
+ * <p>
+ * Every chunk is committed in its own transaction of the current session. A chunk that fails is rolled back and its
+ * items are reported as {@link BulkResult.Status#FAILED}, the committed chunks before and the chunks after it are kept.
+ * A bulk request is therefore not atomic, clients retry the failed items only.
+ *
+ * @author Christian Nelius
+ */
+public class BulkProcessor<T, S extends Serializable> {
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkProcessor.class);
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final Class<T> resource;
+    private final CRUDRepository<T, S> crudRepository;
+    private final SessionFactory sessionFactory;
+    private final int batchSize;
+    private final Function<String, S> idParser;
+
+    public BulkProcessor(ObjectMapper objectMapper, Class<T> resource, CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory) {
+        this(objectMapper, resource, crudRepository, sessionFactory, id -> (S) id);
+    }
+
+    /**
+     * The chunk size is the Hibernate JDBC batch size, see {@link #jdbcBatchSize(SessionFactory)}.
+     *
+     * @param sessionFactory factory of the current session, whose transaction is committed per chunk
+     * @param idParser       parser for the ids of delete items
+     */
+    public BulkProcessor(ObjectMapper objectMapper, Class<T> resource, CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory,
+                         Function<String, S> idParser) {
+        this.idParser = idParser;
+        this.objectMapper = objectMapper;
+        this.itemReader = objectMapper.readerFor(JsonNode.class);
+        this.resource = resource;
+        this.crudRepository = crudRepository;
+        this.sessionFactory = sessionFactory;
+        this.batchSize = jdbcBatchSize(sessionFactory);
+    }
+
+    /**
+     * Reads hibernate.jdbc.batch_size from the session factory.
+     *
+     * @return configured batch size or {@link #DEFAULT_BATCH_SIZE}
+     */
+    public static int jdbcBatchSize(SessionFactory sessionFactory) {
+        int batchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Runs in a unit of work with a transaction, which is committed after every chunk and begun again.
+     */
+    public List<BulkResult> process(InputStream input) {
+        List<BulkResult> results = new ArrayList<>();
+        Batch batch = new Batch(results);
+        try (MappingIterator<JsonNode> items = itemReader.readValues(input)) {
+            while (items.hasNextValue()) {
+                JsonNode item = items.nextValue();
+                int index = results.size();
+                results.add(null);
+                if (item.has("save")) {
+                    batch.save(index, item.get("save"));
+                } else if (item.has("delete") && item.get("delete").isValueNode()) {
+                    try {
+                        batch.delete(index, idParser.apply(item.get("delete").asText()));
+                    } catch (IllegalArgumentException e) {
+                        results.set(index, BulkResult.failed(index, e.getMessage()));
+                    }
+                } else {
+                    results.set(index, BulkResult.failed(index, "Item must contain either save or delete"));
+                }
+            }
+            batch.flush();
+            return results;
+        } catch (IOException e) {
+            throw new MappingException(resource, e);
+        }
+    }
+
+    /**
+     * Collects consecutive operations of the same kind until the batch size is reached.
+     */
+    private class Batch {
+
+        private final List<BulkResult> results;
+        private final List<Integer> indices = new ArrayList<>();
+        private final List<T> saves = new ArrayList<>();
+        private final List<S> deletes = new ArrayList<>();
+
+        private Batch(List<BulkResult> results) {
+            this.results = results;
+        }
+
+        private void save(int index, JsonNode entity) {
+            if (!deletes.isEmpty()) {
+                flush();
+            }
+            try {
+                saves.add(objectMapper.treeToValue(entity, resource));
+                indices.add(index);
+            } catch (JsonProcessingException e) {
+                results.set(index, BulkResult.failed(index, e.getOriginalMessage()));
+            }
+            if (saves.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void delete(int index, S id) {
+            if (!saves.isEmpty()) {
+                flush();
+            }
+            deletes.add(id);
+            indices.add(index);
+            if (deletes.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (saves.isEmpty() && deletes.isEmpty()) {
+                return;
+            }
+            Session session = sessionFactory.getCurrentSession();
+            try {
+                List<BulkResult> chunk = !saves.isEmpty() ? saveAll() : deleteAll();
+                session.getTransaction().commit();
+                for (BulkResult result : chunk) {
+                    results.set(result.getIndex(), result);
+                }
+            } catch (RuntimeException e) {
+                if (session.getTransaction().getStatus().canRollback()) {
+                    session.getTransaction().rollback();
+                }
+                session.clear();
+                String error = Throwables.getRootCause(e).getMessage();
+                LOGGER.warn("Bulk chunk of {} {} items failed: {}", indices.size(), resource.getSimpleName(), error);
+                for (Integer index : indices) {
+                    results.set(index, BulkResult.failed(index, error));
+                }
+            }
+            session.beginTransaction();
+            saves.clear();
+            deletes.clear();
+            indices.clear();
+        }
+
+        private List<BulkResult> saveAll() {
+            List<S> ids = crudRepository.saveAll(saves);
+            List<BulkResult> chunk = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                chunk.add(BulkResult.of(indices.get(i), ids.get(i), BulkResult.Status.SAVED));
+            }
+            return chunk;
+        }
+
+        private List<BulkResult> deleteAll() {
+            Set<S> deleted = new HashSet<>(crudRepository.deleteAll(new HashSet<>(deletes)));
+            List<BulkResult> chunk = new ArrayList<>(deletes.size());
+            for (int i = 0; i < deletes.size(); i++) {
+                S id = deletes.get(i);
+                chunk.add(BulkResult.of(indices.get(i), id, deleted.remove(id) ? BulkResult.Status.DELETED : BulkResult.Status.NOT_FOUND));
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package de.nelius.service.generic.resource;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Result of a single item of a bulk request processed by {@link BulkProcessor}.
+ *
+ * @author Christian Nelius
+ */
+public class BulkResult {
+
+    public enum Status {
+        SAVED, DELETED, NOT_FOUND, FAILED
+    }
+
+    private final int index;
+    private final Object id;
+    private final Status status;
+    private final String error;
+
+    private BulkResult(int index, Object id, Status status, String error) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BulkResult of(int index, Object id, Status status) {
+        return new BulkResult(index, id, status, null);
+    }
+
+    public static BulkResult failed(int index, String error) {
+        return new BulkResult(index, null, Status.FAILED, error);
+    }
+
+    @JsonProperty
+    public int getIndex() {
+        return index;
+    }
+
+    @JsonProperty
+    public Object getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public Status getStatus() {
+        return status;
+    }
+
+    @JsonProperty
+    public String getError() {
+        return error;
+    }
+}
@@ -1,66 +1,175 @@
 package de.nelius.service.generic.resource;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import de.nelius.service.generic.changes.ChangeEventStream;
+import de.nelius.service.generic.changes.ChangeFeed;
+import de.nelius.service.generic.registry.EntityMetadata;
 import de.nelius.service.generic.repository.CRUDRepository;
-import de.nelius.service.generic.updater.JacksonUpdater;
+import de.nelius.service.generic.repository.EntityQuery;
+import de.nelius.service.generic.repository.Page;
+import de.nelius.service.generic.search.SearchIndex;
 import de.nelius.service.generic.updater.Updater;
 import io.dropwizard.hibernate.UnitOfWork;
 import org.glassfish.jersey.process.Inflector;
 import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.hibernate.FlushMode;
+import org.hibernate.SessionFactory;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Map;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Maps Jersey {@link Resource} with {@link CRUDRepository}.
+ * <p>
+ * With a {@link UnitOfWorkExecutor} the methods are suspended and the inflectors run in the unit of work of the executor,
+ * otherwise they run on the request thread with {@link UnitOfWork}. Dropwizard finds the annotation on the apply method of
+ * the inflector. GET and HEAD methods and the multi-get run in read-only sessions without transaction and flush.
+ * The methods have no metric annotations, {@link CRUDResourceMetrics} instruments them instead.
  *
  * @author Christian Nelius
  */
 public class CRUDResourceMapping<T, S extends Serializable> {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Method ASYNC_HANDLE = asyncHandleMethod();
+    private static final String[] FORMATS = {MediaType.APPLICATION_JSON, JacksonFormats.APPLICATION_SMILE, JacksonFormats.APPLICATION_CBOR};
+
+    private final JacksonFormats formats;
+    private EntityMetadata<T, S> entity;
     private Class<T> resource;
     private CRUDRepository<T, S> crudRepository;
     private String path;
     private Updater updater;
+    private BulkProcessor<T, S> bulkProcessor;
+    private UnitOfWorkExecutor executor;
+    private EntityTags<T> entityTags;
+    private ChangeFeed changeFeed;
+    private SearchIndex searchIndex;
 
-    public CRUDResourceMapping(String path, Class<T> resource, CRUDRepository<T, S> crudRepository) {
-        this.path = path;
-        this.resource = resource;
+    /**
+     * Mapping of a registered entity. The updater plan and the JSON reader and writer of the entity are built here,
+     * so the first request does not pay for them.
+     *
+     * @param entity         metadata with path and id type of the entity
+     * @param updater        updater with the application {@link com.fasterxml.jackson.databind.ObjectMapper}
+     * @param sessionFactory factory of the sessions, the bulk method commits its chunks in the current session
+     * @param executor       executor of the units of work or null to run them on the request thread
+     * @param entityTags     tags of the entity or null without conditional requests
+     * @param formats        formats of the application {@link com.fasterxml.jackson.databind.ObjectMapper}, shared with the other resources
+     * @param changeFeed     feed of the entity changes or null without stream
+     * @param searchIndex    index of the entity or null without search
+     */
+    public CRUDResourceMapping(EntityMetadata<T, S> entity, CRUDRepository<T, S> crudRepository, Updater updater, SessionFactory sessionFactory,
+                               UnitOfWorkExecutor executor, EntityTags<T> entityTags, JacksonFormats formats, ChangeFeed changeFeed,
+                               SearchIndex searchIndex) {
+        this.entity = Objects.requireNonNull(entity);
+        this.changeFeed = changeFeed;
+        this.searchIndex = searchIndex;
+        this.formats = Objects.requireNonNull(formats);
+        this.executor = executor;
+        this.entityTags = entityTags;
+        this.path = entity.getPath();
+        this.resource = entity.getDomainClass();
         this.crudRepository = crudRepository;
-        this.updater = new JacksonUpdater();
+        this.updater = Objects.requireNonNull(updater);
+        this.bulkProcessor = new BulkProcessor<>(formats.getObjectMapper(), resource, crudRepository, sessionFactory, this::parseId);
+        updater.prepare(resource);
+        formats.getReader(MediaType.APPLICATION_JSON_TYPE, resource);
+        formats.getWriter(MediaType.APPLICATION_JSON_TYPE, resource);
     }
 
-    public CRUDResourceMapping(String path, Class<T> resource, CRUDRepository<T, S> crudRepository, Updater updater) {
-        this.path = path;
-        this.resource = resource;
-        this.crudRepository = crudRepository;
-        this.updater = updater;
+    public Resource getResource() {
+        return getResource(null);
     }
 
-    public Resource getResource() {
+    /**
+     * Builds the resource and registers its methods with the metrics.
+     *
+     * @param metrics registered Jersey listener, without metrics if null
+     */
+    public Resource getResource(CRUDResourceMetrics metrics) {
         Resource.Builder builder = Resource.builder(path);
         builder.path(path);
-        builder.addMethod("GET").produces(MediaType.APPLICATION_JSON).handledBy(getAll());
-        builder.addChildResource("{id}").addMethod("GET").produces(MediaType.APPLICATION_JSON).handledBy(get());
-        builder.addMethod("POST").produces(MediaType.APPLICATION_JSON).handledBy(post());
-        builder.addChildResource("{id}").addMethod("PUT").produces(MediaType.APPLICATION_JSON).handledBy(update());
-        builder.addChildResource("{id}").addMethod("PATCH").produces(MediaType.APPLICATION_JSON).handledBy(update());
-        builder.addChildResource("{id}").addMethod("DELETE").produces(MediaType.APPLICATION_JSON).handledBy(delete());
+        handledBy(addMethod(builder, null, "GET", "getAll", metrics).produces(FORMATS), getAll());
+        handledBy(addMethod(builder, "{id}", "GET", "get", metrics).produces(FORMATS), get());
+        handledBy(addMethod(builder, "{id}", "HEAD", "exists", metrics), exists());
+        handledBy(addMethod(builder, "_count", "GET", "count", metrics).produces(MediaType.APPLICATION_JSON), count());
+        if (searchIndex != null) {
+            handledBy(addMethod(builder, "_search", "GET", "search", metrics).produces(FORMATS), search());
+        }
+        if (changeFeed != null) {
+            builder.addChildResource("_changes").addMethod("GET").produces(ChangeEventStream.TEXT_EVENT_STREAM).handledBy(changes());
+        }
+        handledBy(addMethod(builder, null, "POST", "post", metrics).consumes(FORMATS).produces(FORMATS), post());
+        handledBy(addMethod(builder, "_mget", "POST", "mget", metrics).consumes(FORMATS).produces(FORMATS), mget());
+        handledBy(addMethod(builder, "_bulk", "POST", "bulk", metrics).consumes(MediaType.APPLICATION_JSON, BulkProcessor.APPLICATION_NDJSON)
+                .produces(MediaType.APPLICATION_JSON), bulk());
+        handledBy(addMethod(builder, "{id}", "PUT", "put", metrics).consumes(MediaType.APPLICATION_JSON).produces(FORMATS), update());
+        handledBy(addMethod(builder, "{id}", "PATCH", "patch", metrics).consumes(MediaType.APPLICATION_JSON).produces(FORMATS), update());
+        handledBy(addMethod(builder, "{id}", "DELETE", "delete", metrics).produces(MediaType.APPLICATION_JSON), delete());
+        handledBy(addMethod(builder, null, "DELETE", "deleteAll", metrics).produces(MediaType.APPLICATION_JSON), deleteAll());
         return builder.build();
     }
 
+    private ResourceMethod.Builder addMethod(Resource.Builder builder, String child, String httpMethod, String name, CRUDResourceMetrics metrics) {
+        if (metrics != null) {
+            metrics.register(entity.getName(), name, httpMethod, child == null ? path : path + "/" + child);
+        }
+        return (child == null ? builder : builder.addChildResource(child)).addMethod(httpMethod);
+    }
+
+    private void handledBy(ResourceMethod.Builder method, Inflector<ContainerRequestContext, Object> inflector) {
+        if (executor == null) {
+            method.handledBy(inflector);
+        } else {
+            UnitOfWork unitOfWork = unitOfWork(inflector);
+            method.suspended(AsyncResponse.NO_TIMEOUT, TimeUnit.SECONDS)
+                    .handledBy(new AsyncHandler(inflector, unitOfWork != null && unitOfWork.readOnly()), ASYNC_HANDLE);
+        }
+    }
+
+    private static UnitOfWork unitOfWork(Inflector<ContainerRequestContext, Object> inflector) {
+        try {
+            return inflector.getClass().getMethod("apply", ContainerRequestContext.class).getAnnotation(UnitOfWork.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 
     private Inflector<ContainerRequestContext, Object> getAll() {
         return new Inflector<ContainerRequestContext, Object>() {
             @Override
-            @UnitOfWork
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
             public Object apply(ContainerRequestContext containerRequestContext) {
-                return crudRepository.getAll();
+                MultivaluedMap<String, String> queryParameters = containerRequestContext.getUriInfo().getQueryParameters();
+                if (queryParameters.containsKey("ids")) {
+                    return getMany(MultiGetResult.split(queryParameters.get("ids")));
+                }
+                if (EntityQuery.isQuery(queryParameters)) {
+                    EntityQuery query = EntityQuery.parse(queryParameters);
+                    return query.getFields().isEmpty() ? crudRepository.find(query) : crudRepository.findFields(query);
+                }
+                if (!queryParameters.containsKey("limit")) {
+                    MediaType mediaType = formats.negotiate(containerRequestContext.getAcceptableMediaTypes());
+                    return Response.ok(new JsonArrayStreamingOutput<>(formats.getWriter(mediaType, resource), crudRepository), mediaType).build();
+                }
+                return crudRepository.getPage(queryParameters.containsKey("after") ? parseId(queryParameters.getFirst("after")) : null, limit(queryParameters.getFirst("limit")));
             }
         };
     }
@@ -68,9 +177,104 @@ public class CRUDResourceMapping<T, S extends Serializable> {
     private Inflector<ContainerRequestContext, Object> get() {
         return new Inflector<ContainerRequestContext, Object>() {
             @Override
-            @UnitOfWork
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                S id = id(containerRequestContext);
+                if (entityTags == null) {
+                    return crudRepository.getOne(id);
+                }
+                MediaType mediaType = formats.negotiate(containerRequestContext.getAcceptableMediaTypes());
+                if (containerRequestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH) != null) {
+                    Response notModified = entityTags.evaluate(containerRequestContext.getRequest(),
+                            entityTags.ofVersion(crudRepository.getVersion(id), mediaType));
+                    if (notModified != null) {
+                        return notModified;
+                    }
+                }
+                T entity = crudRepository.getOne(id);
+                return entity == null ? null : Response.ok(entity, mediaType).tag(entityTags.of(entity, mediaType)).build();
+            }
+        };
+    }
+
+    private Inflector<ContainerRequestContext, Object> exists() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                if (crudRepository.exists(id(containerRequestContext))) {
+                    return Response.ok().build();
+                }
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+        };
+    }
+
+    private Inflector<ContainerRequestContext, Object> count() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                return Collections.singletonMap("count", crudRepository.count());
+            }
+        };
+    }
+
+    /**
+     * Multi-get of the ids in a body like {@code {"ids": [1, 2, 3]}}, for more ids than fit into a query string.
+     */
+    private Inflector<ContainerRequestContext, Object> mget() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
             public Object apply(ContainerRequestContext containerRequestContext) {
-                return crudRepository.getOne((S) containerRequestContext.getUriInfo().getPathParameters().get("id").get(0));
+                long start = System.nanoTime();
+                MultiGetResult.Request request;
+                try {
+                    request = formats.getReader(containerRequestContext.getMediaType(), MultiGetResult.Request.class)
+                            .readValue(containerRequestContext.getEntityStream());
+                } catch (IOException e) {
+                    throw new MappingException(MultiGetResult.Request.class, e);
+                }
+                CRUDResourceMetrics.deserialized(containerRequestContext, System.nanoTime() - start);
+                return getMany(MultiGetResult.check(request.getIds()));
+            }
+        };
+    }
+
+    private MultiGetResult<T> getMany(List<String> ids) {
+        return MultiGetResult.of(ids.stream().map(this::parseId).collect(Collectors.toList()), crudRepository);
+    }
+
+    private Inflector<ContainerRequestContext, Object> search() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                MultivaluedMap<String, String> queryParameters = containerRequestContext.getUriInfo().getQueryParameters();
+                String query = queryParameters.getFirst("q");
+                if (query == null || query.trim().isEmpty()) {
+                    throw new BadRequestException("q is required");
+                }
+                if (!searchIndex.isBuilt()) {
+                    throw new ServiceUnavailableException("Search index of " + entity.getName() + " is being built", 1L);
+                }
+                int limit = queryParameters.containsKey("limit")
+                        ? Math.min(limit(queryParameters.getFirst("limit")), SearchIndex.MAX_LIMIT) : SearchIndex.DEFAULT_LIMIT;
+                List<S> ids = (List<S>) (List<?>) searchIndex.search(query, limit);
+                return crudRepository.getMany(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
+            }
+        };
+    }
+
+    /**
+     * Streams the changes on the request thread without unit of work, it holds no session while waiting for events.
+     */
+    private Inflector<ContainerRequestContext, Object> changes() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                return ChangeEventStream.open(changeFeed, containerRequestContext.getHeaderString(ChangeEventStream.LAST_EVENT_ID));
             }
         };
     }
@@ -80,11 +284,25 @@ public class CRUDResourceMapping<T, S extends Serializable> {
             @Override
             @UnitOfWork
             public Object apply(ContainerRequestContext containerRequestContext) {
+                long start = System.nanoTime();
+                T entity;
                 try {
-                    return crudRepository.save(objectMapper.readValue(containerRequestContext.getEntityStream(), resource));
+                    entity = formats.getReader(containerRequestContext.getMediaType(), resource).readValue(containerRequestContext.getEntityStream());
                 } catch (IOException e) {
                     throw new MappingException(resource, e);
                 }
+                CRUDResourceMetrics.deserialized(containerRequestContext, System.nanoTime() - start);
+                return crudRepository.save(entity);
+            }
+        };
+    }
+
+    private Inflector<ContainerRequestContext, Object> bulk() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                return bulkProcessor.process(containerRequestContext.getEntityStream());
             }
         };
     }
@@ -94,22 +312,49 @@ public class CRUDResourceMapping<T, S extends Serializable> {
             @Override
             @UnitOfWork
             public Object apply(ContainerRequestContext containerRequestContext) {
-                try {
-                    return crudRepository.save((T) updater.update(crudRepository.getOne((S) containerRequestContext.getUriInfo().getPathParameters().get("id").get(0)),
-                            objectMapper.readValue(containerRequestContext.getEntityStream(), Map.class)));
-                } catch (IOException e) {
-                    throw new MappingException(resource, e);
+                T entity = crudRepository.getOne(id(containerRequestContext));
+                if (entity == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
                 }
+                if (entityTags == null) {
+                    return crudRepository.save(merge(entity, containerRequestContext));
+                }
+                Response preconditionFailed = entityTags.evaluateWrite(containerRequestContext.getRequest(), entityTags.getVersion(entity));
+                if (preconditionFailed != null) {
+                    return preconditionFailed;
+                }
+                T saved = crudRepository.save(merge(entity, containerRequestContext));
+                MediaType mediaType = formats.negotiate(containerRequestContext.getAcceptableMediaTypes());
+                return Response.ok(saved, mediaType).tag(entityTags.flushed(saved, mediaType)).build();
             }
         };
     }
 
+    private T merge(T entity, ContainerRequestContext containerRequestContext) {
+        long start = System.nanoTime();
+        T merged = updater.update(entity, containerRequestContext.getEntityStream());
+        CRUDResourceMetrics.deserialized(containerRequestContext, System.nanoTime() - start);
+        return merged;
+    }
+
     private Inflector<ContainerRequestContext, Object> delete() {
         return new Inflector<ContainerRequestContext, Object>() {
             @Override
             @UnitOfWork
             public Object apply(ContainerRequestContext containerRequestContext) {
-                if (crudRepository.delete((S) containerRequestContext.getUriInfo().getPathParameters().get("id").get(0))) {
+                S id = id(containerRequestContext);
+                if (entityTags != null && containerRequestContext.getHeaderString(HttpHeaders.IF_MATCH) != null) {
+                    Object version = crudRepository.getVersion(id);
+                    if (version == null) {
+                        return Response.status(Response.Status.NOT_FOUND).build();
+                    }
+                    Response preconditionFailed = entityTags.evaluateWrite(containerRequestContext.getRequest(), version);
+                    if (preconditionFailed != null) {
+                        return preconditionFailed;
+                    }
+                    return versionedDelete(id, version);
+                }
+                if (crudRepository.delete(id) > 0) {
                     return Response.noContent().build();
                 }
                 return Response.status(Response.Status.NOT_FOUND).build();
@@ -117,4 +362,85 @@ public class CRUDResourceMapping<T, S extends Serializable> {
         };
     }
 
+    /**
+     * Deletes the entity if it still has the checked version, an update committed after the check fails it with 412.
+     */
+    private Response versionedDelete(S id, Object version) {
+        if (crudRepository.delete(id, version) > 0) {
+            return Response.noContent().build();
+        }
+        if (crudRepository.exists(id)) {
+            return Response.status(Response.Status.PRECONDITION_FAILED).build();
+        }
+        return Response.status(Response.Status.NOT_FOUND).build();
+    }
+
+    private Inflector<ContainerRequestContext, Object> deleteAll() {
+        return new Inflector<ContainerRequestContext, Object>() {
+            @Override
+            @UnitOfWork
+            public Object apply(ContainerRequestContext containerRequestContext) {
+                List<String> ids = containerRequestContext.getUriInfo().getQueryParameters().get("id");
+                if (ids == null || ids.isEmpty()) {
+                    throw new BadRequestException("at least one id is required");
+                }
+                return Collections.singletonMap("deleted", crudRepository.deleteByIds(ids.stream().map(CRUDResourceMapping.this::parseId).collect(Collectors.toSet())));
+            }
+        };
+    }
+
+    private S id(ContainerRequestContext containerRequestContext) {
+        return parseId(containerRequestContext.getUriInfo().getPathParameters().getFirst("id"));
+    }
+
+    private S parseId(String id) {
+        try {
+            return entity.parseId(id);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    private int limit(String limit) {
+        try {
+            int value = Integer.parseInt(limit);
+            if (value < 1) {
+                throw new BadRequestException("limit must be positive");
+            }
+            return Math.min(value, Page.MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("limit must be a number", e);
+        }
+    }
+
+    /**
+     * Suspended handler method passing the inflector to the {@link UnitOfWorkExecutor}, read-only if its {@link UnitOfWork} is.
+     */
+    public final class AsyncHandler {
+
+        private final Inflector<ContainerRequestContext, Object> inflector;
+        private final boolean readOnly;
+
+        private AsyncHandler(Inflector<ContainerRequestContext, Object> inflector, boolean readOnly) {
+            this.inflector = inflector;
+            this.readOnly = readOnly;
+        }
+
+        public void handle(@Context ContainerRequestContext containerRequestContext, @Suspended AsyncResponse response) {
+            if (readOnly) {
+                executor.executeReadOnly(response, () -> inflector.apply(containerRequestContext));
+            } else {
+                executor.execute(response, () -> inflector.apply(containerRequestContext));
+            }
+        }
+    }
+
+    private static Method asyncHandleMethod() {
+        try {
+            return CRUDResourceMapping.AsyncHandler.class.getMethod("handle", ContainerRequestContext.class, AsyncResponse.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
@@ -0,0 +1,201 @@
+package de.nelius.service.generic.resource;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.io.CountingOutputStream;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for the methods of {@link CRUDResourceMapping}, which have no annotations for the Dropwizard metrics.
+ * <p>
+ * Registered as Jersey listener and writer interceptor. Every method gets a request timer, meters for 4xx and 5xx responses,
+ * an error counter for exceptions and a response size histogram, named {@code CRUDResourceMapping.<resource>.<method>.*}.
+ * Latency is broken down into timers for the phases of a request:
+ * <ul>
+ * <li>filters: request filters after matching, which is authentication and authorization</li>
+ * <li>deserialization: reading the body, as recorded by the method with {@link #deserialized(ContainerRequestContext, long)}</li>
+ * <li>repository: the method without deserialization, including the unit of work and waiting on its executor</li>
+ * <li>serialization: writing the response entity. Streamed arrays read the database while they are written</li>
+ * </ul>
+ *
+ * @author Christian Nelius
+ */
+public class CRUDResourceMetrics implements ApplicationEventListener, WriterInterceptor {
+
+    private static final String ENDPOINT = CRUDResourceMetrics.class.getName() + ".endpoint";
+    private static final String DESERIALIZATION = CRUDResourceMetrics.class.getName() + ".deserialization";
+
+    private final MetricRegistry metricRegistry;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public CRUDResourceMetrics(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Registers the metrics of a method.
+     *
+     * @param resource   name of the resource
+     * @param name       name of the method
+     * @param httpMethod HTTP method
+     * @param path       full path template of the method
+     */
+    void register(String resource, String name, String httpMethod, String path) {
+        endpoints.put(key(httpMethod, path), new Endpoint(metricRegistry, MetricRegistry.name(CRUDResourceMapping.class, resource, name)));
+    }
+
+    /**
+     * Adds time spent reading the request body.
+     */
+    static void deserialized(ContainerRequestContext containerRequestContext, long nanos) {
+        Object recorded = containerRequestContext.getProperty(DESERIALIZATION);
+        containerRequestContext.setProperty(DESERIALIZATION, recorded == null ? nanos : (Long) recorded + nanos);
+    }
+
+    private static String key(String httpMethod, String path) {
+        return httpMethod + " " + path.replaceAll("/+", "/");
+    }
+
+    private static String path(Resource resource) {
+        return resource.getParent() == null ? resource.getPath() : path(resource.getParent()) + "/" + resource.getPath();
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return endpoints.isEmpty() ? null : new EndpointListener();
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Endpoint endpoint = (Endpoint) context.getProperty(ENDPOINT);
+        if (endpoint == null) {
+            context.proceed();
+            return;
+        }
+        OutputStream output = context.getOutputStream();
+        CountingOutputStream countingOutput = new CountingOutputStream(output);
+        context.setOutputStream(countingOutput);
+        try {
+            context.proceed();
+        } finally {
+            endpoint.responseSize.update(countingOutput.getCount());
+            context.setOutputStream(output);
+        }
+    }
+
+    /**
+     * Follows one request through its phases.
+     */
+    private class EndpointListener implements RequestEventListener {
+
+        private final long start = System.nanoTime();
+        private Endpoint endpoint;
+        private long matched;
+        private long methodStart;
+        private long writeStart;
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            if (event.getType() == RequestEvent.Type.REQUEST_MATCHED) {
+                ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+                endpoint = method == null ? null : endpoints.get(key(method.getHttpMethod(), path(method.getParent())));
+                if (endpoint != null) {
+                    event.getContainerRequest().setProperty(ENDPOINT, endpoint);
+                    matched = System.nanoTime();
+                }
+            }
+            if (endpoint == null) {
+                return;
+            }
+            switch (event.getType()) {
+                case REQUEST_FILTERED:
+                    endpoint.filters.update(System.nanoTime() - matched, TimeUnit.NANOSECONDS);
+                    break;
+                case RESOURCE_METHOD_START:
+                    methodStart = System.nanoTime();
+                    break;
+                case RESP_FILTERS_START:
+                    if (methodStart != 0) {
+                        Long deserialization = (Long) event.getContainerRequest().getProperty(DESERIALIZATION);
+                        long method = System.nanoTime() - methodStart;
+                        if (deserialization != null) {
+                            endpoint.deserialization.update(deserialization, TimeUnit.NANOSECONDS);
+                            method -= deserialization;
+                        }
+                        endpoint.repository.update(method, TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                case RESP_FILTERS_FINISHED:
+                    writeStart = System.nanoTime();
+                    break;
+                case ON_EXCEPTION:
+                    endpoint.errors.inc();
+                    break;
+                case FINISHED:
+                    long finished = System.nanoTime();
+                    if (writeStart != 0) {
+                        endpoint.serialization.update(finished - writeStart, TimeUnit.NANOSECONDS);
+                    }
+                    endpoint.requests.update(finished - start, TimeUnit.NANOSECONDS);
+                    int status = event.getContainerResponse() == null ? 500 : event.getContainerResponse().getStatus();
+                    if (status >= 500) {
+                        endpoint.serverErrors.mark();
+                    } else if (status >= 400) {
+                        endpoint.clientErrors.mark();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Metrics of one method.
+     */
+    private static class Endpoint {
+
+        private final Timer requests;
+        private final Timer filters;
+        private final Timer deserialization;
+        private final Timer repository;
+        private final Timer serialization;
+        private final Meter clientErrors;
+        private final Meter serverErrors;
+        private final Counter errors;
+        private final Histogram responseSize;
+
+        private Endpoint(MetricRegistry metricRegistry, String name) {
+            requests = metricRegistry.timer(MetricRegistry.name(name, "requests"));
+            filters = metricRegistry.timer(MetricRegistry.name(name, "filters"));
+            deserialization = metricRegistry.timer(MetricRegistry.name(name, "deserialization"));
+            repository = metricRegistry.timer(MetricRegistry.name(name, "repository"));
+            serialization = metricRegistry.timer(MetricRegistry.name(name, "serialization"));
+            clientErrors = metricRegistry.meter(MetricRegistry.name(name, "4xx-responses"));
+            serverErrors = metricRegistry.meter(MetricRegistry.name(name, "5xx-responses"));
+            errors = metricRegistry.counter(MetricRegistry.name(name, "errors"));
+            responseSize = metricRegistry.histogram(MetricRegistry.name(name, "response-size"));
+        }
+    }
+}
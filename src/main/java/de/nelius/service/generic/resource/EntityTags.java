@@ -0,0 +1,106 @@
+package de.nelius.service.generic.resource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * Strong ETags from the {@link javax.persistence.Version} of an entity for conditional requests.
+ * <p>
+ * Reads with If-None-Match can be answered with 304 from a version lookup, writes with If-Match
+ * are answered with 412 if the entity changed in between. Entities without version get no ETag.
+ * <p>
+ * The JSON, Smile and CBOR representations of a version differ, so the ETags of the binary formats are suffixed
+ * with their subtype, like {@code "3-cbor"}. JSON keeps the plain version. Writes accept the ETag of any format.
+ *
+ * @author Christian Nelius
+ */
+public class EntityTags<T> {
+
+    private final SessionFactory sessionFactory;
+    private final EntityPersister entityPersister;
+    private final JacksonFormats formats;
+
+    public EntityTags(Class<T> domainClass, SessionFactory sessionFactory, JacksonFormats formats) {
+        this.sessionFactory = sessionFactory;
+        this.formats = formats;
+        this.entityPersister = sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(domainClass);
+    }
+
+    public boolean isVersioned() {
+        return entityPersister.isVersioned();
+    }
+
+    /**
+     * @return version of the entity or null if the entity is not versioned
+     */
+    public Object getVersion(T entity) {
+        return entityPersister.isVersioned() ? entityPersister.getVersion(entity) : null;
+    }
+
+    /**
+     * @param mediaType format of the representation
+     * @return ETag of the version in the format or null if there is no version
+     */
+    public EntityTag ofVersion(Object version, MediaType mediaType) {
+        if (version == null) {
+            return null;
+        }
+        if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            return new EntityTag(String.valueOf(version));
+        }
+        return new EntityTag(version + "-" + mediaType.getSubtype());
+    }
+
+    /**
+     * @return ETag of the entity version in the format or null if the entity is not versioned
+     */
+    public EntityTag of(T entity, MediaType mediaType) {
+        return ofVersion(getVersion(entity), mediaType);
+    }
+
+    /**
+     * Flushes the current session, so the version of a changed entity is incremented, and returns its ETag.
+     */
+    public EntityTag flushed(T entity, MediaType mediaType) {
+        sessionFactory.getCurrentSession().flush();
+        return of(entity, mediaType);
+    }
+
+    /**
+     * Evaluates If-Match and If-None-Match against the ETag.
+     *
+     * @return 304 or 412 response or null if the request has to be processed
+     */
+    public Response evaluate(Request request, EntityTag entityTag) {
+        if (entityTag == null) {
+            return null;
+        }
+        Response.ResponseBuilder precondition = request.evaluatePreconditions(entityTag);
+        return precondition == null ? null : precondition.tag(entityTag).build();
+    }
+
+    /**
+     * Evaluates the If-Match of a write against the ETags of the version in all formats.
+     *
+     * @return 412 response with the JSON ETag or null if the request has to be processed
+     */
+    public Response evaluateWrite(Request request, Object version) {
+        Response preconditionFailed = null;
+        for (MediaType mediaType : formats.getMediaTypes()) {
+            Response response = evaluate(request, ofVersion(version, mediaType));
+            if (response == null) {
+                return null;
+            }
+            if (preconditionFailed == null) {
+                preconditionFailed = response;
+            }
+        }
+        return preconditionFailed;
+    }
+}
@@ -0,0 +1,22 @@
+package de.nelius.service.generic.resource;
+
+import de.nelius.service.generic.repository.InvalidQueryException;
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Maps {@link InvalidQueryException} to 400 Bad Request.
+ *
+ * @author Christian Nelius
+ */
+public class InvalidQueryExceptionMapper implements ExceptionMapper<InvalidQueryException> {
+
+    @Override
+    public Response toResponse(InvalidQueryException exception) {
+        return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(), exception.getMessage())).build();
+    }
+}
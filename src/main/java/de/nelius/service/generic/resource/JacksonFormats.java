@@ -0,0 +1,145 @@
+package de.nelius.service.generic.resource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import io.dropwizard.jersey.setup.JerseyEnvironment;
+
+import javax.ws.rs.core.MediaType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Jackson formats the resources negotiate with the Accept and Content-Type headers: JSON, Smile and CBOR.
+ * <p>
+ * The binary mappers are built from the JSON {@link ObjectMapper} and share its configuration, modules and
+ * serializers, only the {@link JsonFactory} is replaced. Readers and writers are cached per format and entity class,
+ * so their root (de)serializers are only looked up once.
+ *
+ * @author Christian Nelius
+ */
+public class JacksonFormats {
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    private final Map<MediaType, Format> formats = new LinkedHashMap<>();
+
+    public JacksonFormats(ObjectMapper objectMapper) {
+        formats.put(MediaType.APPLICATION_JSON_TYPE, new Format(objectMapper));
+        formats.put(APPLICATION_SMILE_TYPE, new Format(withFactory(objectMapper, new SmileFactory())));
+        formats.put(APPLICATION_CBOR_TYPE, new Format(withFactory(objectMapper, new CBORFactory())));
+    }
+
+    private static ObjectMapper withFactory(ObjectMapper objectMapper, JsonFactory jsonFactory) {
+        ObjectMapper copy = new ObjectMapper(jsonFactory, (DefaultSerializerProvider) objectMapper.getSerializerProvider(),
+                (DefaultDeserializationContext) objectMapper.getDeserializationContext());
+        copy.setConfig(objectMapper.getSerializationConfig());
+        copy.setConfig(objectMapper.getDeserializationConfig());
+        copy.setSerializerFactory(objectMapper.getSerializerFactory());
+        return copy;
+    }
+
+    /**
+     * Registers the message body providers of the binary formats, JSON is provided by Dropwizard,
+     * and the {@link VaryAcceptFilter} for the negotiated responses.
+     */
+    public void register(JerseyEnvironment jersey) {
+        jersey.register(new JacksonSmileProvider(formats.get(APPLICATION_SMILE_TYPE).objectMapper));
+        jersey.register(new JacksonCBORProvider(formats.get(APPLICATION_CBOR_TYPE).objectMapper));
+        jersey.register(new VaryAcceptFilter(getMediaTypes()));
+    }
+
+    /**
+     * @return media types of all formats, JSON first
+     */
+    public Set<MediaType> getMediaTypes() {
+        return Collections.unmodifiableSet(formats.keySet());
+    }
+
+    /**
+     * @return JSON mapper
+     */
+    public ObjectMapper getObjectMapper() {
+        return formats.get(MediaType.APPLICATION_JSON_TYPE).objectMapper;
+    }
+
+    /**
+     * @return mapper of the media type or the JSON mapper if the type is none of the formats
+     */
+    public ObjectMapper getObjectMapper(MediaType mediaType) {
+        return format(mediaType).objectMapper;
+    }
+
+    /**
+     * @return cached reader for the type in the format of the media type, JSON if the type is none of the formats
+     */
+    public ObjectReader getReader(MediaType mediaType, Class<?> type) {
+        Format format = format(mediaType);
+        return format.readers.computeIfAbsent(type, format.objectMapper::readerFor);
+    }
+
+    /**
+     * @return cached writer for the type in the format of the media type, JSON if the type is none of the formats
+     */
+    public ObjectWriter getWriter(MediaType mediaType, Class<?> type) {
+        Format format = format(mediaType);
+        return format.writers.computeIfAbsent(type, format.objectMapper::writerFor);
+    }
+
+    private Format format(MediaType mediaType) {
+        if (mediaType != null) {
+            for (Map.Entry<MediaType, Format> entry : formats.entrySet()) {
+                if (entry.getKey().isCompatible(mediaType)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return formats.get(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    /**
+     * Selects the format for content written by the resource itself, like streamed arrays.
+     *
+     * @param acceptableMediaTypes acceptable media types of the request ordered by preference
+     * @return first supported media type, JSON for wildcards or if none is supported
+     */
+    public MediaType negotiate(List<MediaType> acceptableMediaTypes) {
+        for (MediaType acceptable : acceptableMediaTypes) {
+            for (MediaType mediaType : formats.keySet()) {
+                if (mediaType.isCompatible(acceptable)) {
+                    return mediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON_TYPE;
+    }
+
+    /**
+     * Mapper of a format with its cached readers and writers.
+     */
+    private static class Format {
+
+        private final ObjectMapper objectMapper;
+        private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+        private Format(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package de.nelius.service.generic.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.nelius.service.generic.repository.CRUDRepository;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * {@link StreamingOutput} that writes every entity of {@link CRUDRepository#scrollAll(java.util.function.Consumer)}
+ * as one JSON array with a {@link JsonGenerator}. Only one entity is held in memory at a time.
+ *
+ * @author Christian Nelius
+ */
+public class JsonArrayStreamingOutput<T> implements StreamingOutput {
+
+    private final ObjectWriter objectWriter;
+    private final CRUDRepository<T, ?> crudRepository;
+
+    /**
+     * @param objectWriter writer for the entity type, its factory creates the generator of the array
+     */
+    public JsonArrayStreamingOutput(ObjectWriter objectWriter, CRUDRepository<T, ?> crudRepository) {
+        this.objectWriter = objectWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.crudRepository = crudRepository;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = objectWriter.getFactory().createGenerator(output)) {
+            generator.writeStartArray();
+            crudRepository.scrollAll(entity -> {
+                try {
+                    objectWriter.writeValue(generator, entity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
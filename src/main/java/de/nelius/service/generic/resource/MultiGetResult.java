@@ -0,0 +1,123 @@
+package de.nelius.service.generic.resource;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.nelius.service.generic.repository.CRUDRepository;
+
+import javax.ws.rs.BadRequestException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Result of a multi-get of {@link CRUDRepository#getMany(java.util.Collection)}.
+ * <p>
+ * Contains one item per requested id in the order of the request, ids that do not exist are returned with
+ * {@code found} false and without entity.
+ *
+ * @param <T> {@link javax.persistence.Entity}
+ * @author Christian Nelius
+ */
+public class MultiGetResult<T> {
+
+    /**
+     * Upper bound for the ids of one multi-get.
+     */
+    public static final int MAX_IDS = 1000;
+
+    private final List<Item<T>> items;
+
+    private MultiGetResult(List<Item<T>> items) {
+        this.items = items;
+    }
+
+    /**
+     * Loads the entities of the ids with one call of the repository.
+     */
+    public static <T, S extends Serializable> MultiGetResult<T> of(List<S> ids, CRUDRepository<T, S> crudRepository) {
+        List<Item<T>> items = new ArrayList<>(ids.size());
+        Iterator<T> entities = crudRepository.getMany(ids).iterator();
+        for (S id : ids) {
+            items.add(new Item<>(id, entities.next()));
+        }
+        return new MultiGetResult<>(items);
+    }
+
+    /**
+     * Splits comma separated ids of query parameters like {@code ids=1,2&ids=3}.
+     *
+     * @throws BadRequestException if no or more than {@link #MAX_IDS} ids are given
+     */
+    public static List<String> split(List<String> values) {
+        List<String> ids = new ArrayList<>();
+        for (String value : values) {
+            for (String id : value.split(",")) {
+                if (!id.isEmpty()) {
+                    ids.add(id);
+                }
+            }
+        }
+        return check(ids);
+    }
+
+    /**
+     * @throws BadRequestException if no or more than {@link #MAX_IDS} ids are given
+     */
+    public static <S> List<S> check(List<S> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("at least one id is required");
+        }
+        if (ids.size() > MAX_IDS) {
+            throw new BadRequestException("at most " + MAX_IDS + " ids are allowed");
+        }
+        return ids;
+    }
+
+    @JsonProperty
+    public List<Item<T>> getItems() {
+        return items;
+    }
+
+    /**
+     * Body of {@code POST _mget}.
+     */
+    public static class Request {
+
+        @JsonProperty
+        private List<String> ids;
+
+        public List<String> getIds() {
+            return ids;
+        }
+
+        public void setIds(List<String> ids) {
+            this.ids = ids;
+        }
+    }
+
+    public static class Item<T> {
+
+        private final Object id;
+        private final T entity;
+
+        private Item(Object id, T entity) {
+            this.id = id;
+            this.entity = entity;
+        }
+
+        @JsonProperty
+        public Object getId() {
+            return id;
+        }
+
+        @JsonProperty
+        public boolean isFound() {
+            return entity != null;
+        }
+
+        @JsonProperty
+        public T getEntity() {
+            return entity;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.nelius.service.generic.resource;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Maps {@link OptimisticLockException} to 412 Precondition Failed. The entity was changed by a concurrent
+ * write between reading and flushing it.
+ *
+ * @author Christian Nelius
+ */
+public class OptimisticLockExceptionMapper implements ExceptionMapper<OptimisticLockException> {
+
+    @Override
+    public Response toResponse(OptimisticLockException exception) {
+        return Response.status(Response.Status.PRECONDITION_FAILED).type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Response.Status.PRECONDITION_FAILED.getStatusCode(), "Entity was modified concurrently")).build();
+    }
+}
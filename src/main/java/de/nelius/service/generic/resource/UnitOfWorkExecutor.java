@@ -0,0 +1,122 @@
+package de.nelius.service.generic.resource;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.util.Duration;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs resource work in its own Hibernate unit of work and resumes the {@link AsyncResponse} with the result.
+ * <p>
+ * A direct executor runs the work on the request thread. A pooled executor, see {@link UnitOfWorkExecutorFactory},
+ * runs it on a bounded pool, so request threads are not pinned to JDBC I/O. If the pool is saturated the
+ * request is answered with 503 Service Unavailable and a Retry-After header.
+ * <p>
+ * Reads run in a read-only session without transaction, so loaded entities are neither snapshotted for dirty checking
+ * nor flushed, like {@code @UnitOfWork(readOnly = true, transactional = false, flushMode = FlushMode.MANUAL)}.
+ * <p>
+ * The resource methods return as soon as the work is handed off, so {@code @Timed} on them would only measure the
+ * hand-off. {@code UnitOfWorkExecutor.<resource>.requests} times the work instead, from submission including the wait
+ * for a pool thread until the result is ready to be written.
+ *
+ * @author Christian Nelius
+ */
+public class UnitOfWorkExecutor {
+
+    private final SessionFactory sessionFactory;
+    private final Executor executor;
+    private final Meter rejected;
+    private final Duration retryAfter;
+    private final Timer requests;
+
+    public UnitOfWorkExecutor(SessionFactory sessionFactory, Executor executor, Meter rejected, Duration retryAfter, Timer requests) {
+        this.sessionFactory = sessionFactory;
+        this.executor = executor;
+        this.rejected = rejected;
+        this.retryAfter = retryAfter;
+        this.requests = requests;
+    }
+
+    /**
+     * Creates an executor that runs the work on the calling request thread.
+     *
+     * @param name name of the resource for the requests timer
+     */
+    public static UnitOfWorkExecutor direct(String name, SessionFactory sessionFactory, MetricRegistry metricRegistry) {
+        return new UnitOfWorkExecutor(sessionFactory, Runnable::run, new Meter(), Duration.seconds(0),
+                metricRegistry.timer(MetricRegistry.name(UnitOfWorkExecutor.class, name, "requests")));
+    }
+
+    /**
+     * Executes the work in a unit of work and resumes the response with its result or exception.
+     * The transaction is committed before the response is written. A null result is answered with 204 No Content.
+     */
+    public void execute(AsyncResponse response, Supplier<?> work) {
+        execute(response, work, false);
+    }
+
+    /**
+     * Executes the work in a read-only session without transaction and resumes the response like
+     * {@link #execute(AsyncResponse, Supplier)}. Only for work that reads, every statement runs in auto-commit.
+     */
+    public void executeReadOnly(AsyncResponse response, Supplier<?> work) {
+        execute(response, work, true);
+    }
+
+    private void execute(AsyncResponse response, Supplier<?> work, boolean readOnly) {
+        Timer.Context timer = requests.time();
+        try {
+            executor.execute(() -> {
+                Object result;
+                try {
+                    result = inUnitOfWork(work, readOnly);
+                } catch (Throwable e) {
+                    timer.stop();
+                    response.resume(e);
+                    return;
+                }
+                timer.stop();
+                response.resume(result != null ? result : Response.noContent().build());
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Math.max(1, retryAfter.toSeconds())).build());
+        }
+    }
+
+    private <R> R inUnitOfWork(Supplier<R> work, boolean readOnly) {
+        Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            if (readOnly) {
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+                return work.get();
+            }
+            session.beginTransaction();
+            R result = work.get();
+            session.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.nelius.service.generic.resource;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Configuration for a pooled {@link UnitOfWorkExecutor} of one resource.
+ * <p>
+ * properties:
+ * <p>
+ * async.[resource].threads : threads doing database work for the resource : 16
+ * async.[resource].queueSize : requests waiting for a thread before 503 is returned : 64
+ * async.[resource].retryAfter : Retry-After of 503 responses : 1 second
+ *
+ * @author Christian Nelius
+ */
+public class UnitOfWorkExecutorFactory {
+
+    @Min(1)
+    @JsonProperty
+    private int threads = 16;
+
+    @Min(1)
+    @JsonProperty
+    private int queueSize = 64;
+
+    @NotNull
+    @JsonProperty
+    private Duration retryAfter = Duration.seconds(1);
+
+    /**
+     * Builds a bounded pool managed by the environment lifecycle. Registers the pool metrics
+     * (submitted, running, completed, duration) as well as queued, rejected and requests under UnitOfWorkExecutor.[name].
+     */
+    public UnitOfWorkExecutor build(String name, SessionFactory sessionFactory, Environment environment) {
+        String metricName = name(UnitOfWorkExecutor.class, name);
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueSize);
+        environment.metrics().register(name(metricName, "queued"), (Gauge<Integer>) queue::size);
+        return new UnitOfWorkExecutor(sessionFactory,
+                new InstrumentedExecutorService(environment.lifecycle().executorService(name + "-db-%d")
+                        .minThreads(threads).maxThreads(threads).workQueue(queue).build(), environment.metrics(), metricName),
+                environment.metrics().meter(name(metricName, "rejected")), retryAfter,
+                environment.metrics().timer(name(metricName, "requests")));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
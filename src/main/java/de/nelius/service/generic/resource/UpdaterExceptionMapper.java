@@ -0,0 +1,23 @@
+package de.nelius.service.generic.resource;
+
+import de.nelius.service.generic.updater.UpdaterException;
+import io.dropwizard.jersey.errors.ErrorMessage;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Maps {@link UpdaterException} of unknown properties or unreadable values in an update body to 400 Bad Request.
+ *
+ * @author Christian Nelius
+ */
+public class UpdaterExceptionMapper implements ExceptionMapper<UpdaterException> {
+
+    @Override
+    public Response toResponse(UpdaterException exception) {
+        String message = exception.getCause() != null ? exception.getMessage() + " " + exception.getCause().getMessage() : exception.getMessage();
+        return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(), message)).build();
+    }
+}
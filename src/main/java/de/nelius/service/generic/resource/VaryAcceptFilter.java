@@ -0,0 +1,37 @@
+package de.nelius.service.generic.resource;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Set;
+
+/**
+ * Adds {@code Vary: Accept} to responses in one of the {@link JacksonFormats} and to 304 Not Modified.
+ * <p>
+ * The format of these responses is negotiated with the Accept header, without the header a shared cache
+ * could answer a JSON client with a cached CBOR body.
+ *
+ * @author Christian Nelius
+ */
+public class VaryAcceptFilter implements ContainerResponseFilter {
+
+    private final Set<MediaType> mediaTypes;
+
+    public VaryAcceptFilter(Set<MediaType> mediaTypes) {
+        this.mediaTypes = mediaTypes;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (responseContext.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() || isNegotiated(responseContext.getMediaType())) {
+            responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    private boolean isNegotiated(MediaType mediaType) {
+        return mediaType != null && mediaTypes.stream().anyMatch(mediaType::isCompatible);
+    }
+}
@@ -0,0 +1,159 @@
+package de.nelius.service.generic.search;
+
+import de.nelius.service.generic.repository.AfterCommit;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.generic.repository.EntityQuery;
+import de.nelius.service.generic.repository.Page;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Decorator keeping a {@link SearchIndex} up to date with the saves and deletes of a {@link CRUDRepository}.
+ * <p>
+ * The index is changed after the transaction committed. Saved entities are indexed with their values at commit time.
+ *
+ * @author Christian Nelius
+ */
+public class IndexingCRUDRepository<T, S extends Serializable> implements CRUDRepository<T, S> {
+
+    private final CRUDRepository<T, S> crudRepository;
+    private final SessionFactory sessionFactory;
+    private final SearchIndex searchIndex;
+    private final EntityPersister entityPersister;
+
+    /**
+     * @throws org.hibernate.QueryException if an indexed field is not an attribute of the entity
+     */
+    public IndexingCRUDRepository(Class<T> domainClass, CRUDRepository<T, S> crudRepository, SessionFactory sessionFactory,
+                                  SearchIndex searchIndex) {
+        this.crudRepository = crudRepository;
+        this.sessionFactory = sessionFactory;
+        this.searchIndex = searchIndex;
+        this.entityPersister = sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(domainClass);
+        for (String field : searchIndex.getFields()) {
+            entityPersister.getPropertyType(field);
+        }
+    }
+
+    /**
+     * Builds the index from all entities of the repository in the current session. Saves and deletes committed in the
+     * meantime are kept. If the build fails, the index stays unbuilt.
+     *
+     * @return number of indexed entities
+     */
+    public int indexAll() {
+        searchIndex.startBuild();
+        crudRepository.scrollAll(entity -> searchIndex.putIfUnchanged(
+                entityPersister.getIdentifier(entity, (SharedSessionContractImplementor) null), values(entity)));
+        searchIndex.finishBuild();
+        return searchIndex.size();
+    }
+
+    private List<Object> values(T entity) {
+        List<Object> values = new ArrayList<>(searchIndex.getFields().size());
+        for (String field : searchIndex.getFields()) {
+            values.add(entityPersister.getPropertyValue(entity, field));
+        }
+        return values;
+    }
+
+    public List<T> getAll() {
+        return crudRepository.getAll();
+    }
+
+    public Page<T, S> getPage(S after, int limit) {
+        return crudRepository.getPage(after, limit);
+    }
+
+    public void scrollAll(Consumer<? super T> consumer) {
+        crudRepository.scrollAll(consumer);
+    }
+
+    public List<T> find(EntityQuery query) {
+        return crudRepository.find(query);
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return crudRepository.findFields(query);
+    }
+
+    public T getOne(S id) {
+        return crudRepository.getOne(id);
+    }
+
+    public List<T> getMany(Collection<S> ids) {
+        return crudRepository.getMany(ids);
+    }
+
+    public Object getVersion(S id) {
+        return crudRepository.getVersion(id);
+    }
+
+    public long count() {
+        return crudRepository.count();
+    }
+
+    public boolean exists(S id) {
+        return crudRepository.exists(id);
+    }
+
+    public T save(T object) {
+        T saved = crudRepository.save(object);
+        Serializable id = sessionFactory.getCurrentSession().getIdentifier(saved);
+        AfterCommit.run(sessionFactory, () -> searchIndex.put(id, values(saved)));
+        return saved;
+    }
+
+    public List<S> saveAll(List<T> objects) {
+        List<S> ids = crudRepository.saveAll(objects);
+        List<T> saved = new ArrayList<>(objects);
+        AfterCommit.run(sessionFactory, () -> {
+            for (int i = 0; i < ids.size(); i++) {
+                searchIndex.put(ids.get(i), values(saved.get(i)));
+            }
+        });
+        return ids;
+    }
+
+    public int delete(S id) {
+        int deleted = crudRepository.delete(id);
+        if (deleted > 0) {
+            AfterCommit.run(sessionFactory, () -> searchIndex.remove(id));
+        }
+        return deleted;
+    }
+
+    public int delete(S id, Object version) {
+        int deleted = crudRepository.delete(id, version);
+        if (deleted > 0) {
+            AfterCommit.run(sessionFactory, () -> searchIndex.remove(id));
+        }
+        return deleted;
+    }
+
+    public int deleteByIds(Collection<S> ids) {
+        int deleted = crudRepository.deleteByIds(ids);
+        if (deleted > 0) {
+            List<S> removed = new ArrayList<>(ids);
+            AfterCommit.run(sessionFactory, () -> removed.forEach(searchIndex::remove));
+        }
+        return deleted;
+    }
+
+    public List<S> deleteAll(Collection<S> ids) {
+        List<S> deleted = crudRepository.deleteAll(ids);
+        if (!deleted.isEmpty()) {
+            AfterCommit.run(sessionFactory, () -> deleted.forEach(searchIndex::remove));
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,476 @@
+package de.nelius.service.generic.search;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * In-memory n-gram index over text attributes of one entity for typeahead search.
+ * <p>
+ * The attribute values of an entity are normalized to lower case words without diacritics and stored as one text per
+ * document. Every word adds its trigrams and its prefixes of one and two characters to posting lists, which are growing
+ * int arrays of document numbers in ascending order. A query word of three or more characters matches anywhere in a
+ * word, shorter words match the start of a word. The documents of the smallest posting list of the query grams are
+ * looked up in the other lists and checked against their text, so grams spread over different words do not match.
+ * <p>
+ * Hits are ranked by how the query words match: a whole word before the start of a word before the middle of a word,
+ * then shorter texts first. To bound the latency of unselective queries like a single letter, only the first 1000
+ * matching documents are ranked.
+ * <p>
+ * Changing an entity adds a new document and removes the old one, removed documents stay in the posting lists until
+ * they outnumber the live ones and the lists are rebuilt.
+ * <p>
+ * The index is built in the background after the start and not searchable before. Changes committed while it is built
+ * are recorded, so the build does not overwrite them with the older values it read.
+ * <p>
+ * Live documents are reported as {@code SearchIndex.<entity>.documents}, the estimated heap as {@code .memory} in bytes
+ * and the query latency as {@code .search}.
+ *
+ * @author Christian Nelius
+ */
+public class SearchIndex {
+
+    /**
+     * Results of a query without limit.
+     */
+    public static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * Upper bound for the results of one query.
+     */
+    public static final int MAX_LIMIT = 100;
+
+    private static final char PREFIX = '\u0001';
+    private static final int MIN_COMPACTION = 1024;
+    private static final int MAX_MATCHES = 1000;
+
+    private final String name;
+    private final List<String> fields;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Timer searches;
+    private Map<Long, Postings> postings = new HashMap<>();
+    private Map<Object, Integer> documents = new HashMap<>();
+    private Object[] ids = new Object[1024];
+    private String[] texts = new String[1024];
+    private int size;
+    private int removed;
+    private long textBytes;
+    private Set<Object> changedWhileBuilding;
+    private volatile boolean built;
+
+    /**
+     * @param fields names of the indexed attributes
+     */
+    public SearchIndex(String name, List<String> fields, MetricRegistry metricRegistry) {
+        this.name = name;
+        this.fields = fields;
+        this.searches = metricRegistry.timer(name(SearchIndex.class, name, "search"));
+        metricRegistry.register(name(SearchIndex.class, name, "documents"), (Gauge<Integer>) this::size);
+        metricRegistry.register(name(SearchIndex.class, name, "memory"), (Gauge<Long>) this::estimatedBytes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Starts building the index, the documents are added with {@link #putIfUnchanged(Object, List)}.
+     */
+    public void startBuild() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+            changedWhileBuilding = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finishes building, the index is searchable afterwards.
+     */
+    public void finishBuild() {
+        lock.writeLock().lock();
+        try {
+            changedWhileBuilding = null;
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the index is built and can be searched
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Adds or replaces the document of an entity.
+     *
+     * @param id     id of the entity
+     * @param values values of the indexed attributes, null values are skipped
+     */
+    public void put(Object id, List<?> values) {
+        put(id, values, false);
+    }
+
+    /**
+     * Adds the document of an entity read by the build, unless the entity was changed since the build started.
+     */
+    public void putIfUnchanged(Object id, List<?> values) {
+        put(id, values, true);
+    }
+
+    private void put(Object id, List<?> values, boolean building) {
+        StringBuilder builder = new StringBuilder();
+        for (Object value : values) {
+            if (value != null) {
+                builder.append(' ').append(value);
+            }
+        }
+        String text = normalize(builder);
+        lock.writeLock().lock();
+        try {
+            if (changedWhileBuilding != null) {
+                if (building && changedWhileBuilding.contains(id)) {
+                    return;
+                }
+                if (!building) {
+                    changedWhileBuilding.add(id);
+                }
+            }
+            Integer document = documents.get(id);
+            if (document != null) {
+                if (texts[document].equals(text)) {
+                    return;
+                }
+                removeDocument(document);
+            }
+            addDocument(id, text);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Object id) {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileBuilding != null) {
+                changedWhileBuilding.add(id);
+            }
+            Integer document = documents.remove(id);
+            if (document != null) {
+                removeDocument(document);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the best matching entities. Every word of the query has to match.
+     *
+     * @param query words to search for
+     * @param limit maximum number of results
+     * @return ids of the entities, best match first
+     */
+    public List<Object> search(String query, int limit) {
+        String[] words = words(normalize(query));
+        if (words.length == 0) {
+            return Collections.emptyList();
+        }
+        try (Timer.Context ignored = searches.time()) {
+            lock.readLock().lock();
+            try {
+                return search(words, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private List<Object> search(String[] words, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        for (String word : words) {
+            for (long gram : queryGrams(word)) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                lists.add(list);
+            }
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings smallest = lists.get(0);
+        int[] positions = new int[lists.size()];
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit, Hit.BEST_FIRST.reversed());
+        int matches = 0;
+        candidates:
+        for (int i = 0; i < smallest.size && matches < MAX_MATCHES; i++) {
+            int document = smallest.documents[i];
+            for (int j = 1; j < lists.size(); j++) {
+                Postings list = lists.get(j);
+                positions[j] = list.seek(document, positions[j]);
+                if (positions[j] == list.size) {
+                    break candidates;
+                }
+                if (list.documents[positions[j]] != document) {
+                    continue candidates;
+                }
+            }
+            String text = texts[document];
+            if (text == null) {
+                continue;
+            }
+            int score = 0;
+            for (String word : words) {
+                int wordScore = score(text, word);
+                if (wordScore == 0) {
+                    score = 0;
+                    break;
+                }
+                score += wordScore;
+            }
+            if (score > 0) {
+                matches++;
+                Hit hit = new Hit(document, score, text.length());
+                if (top.size() < limit) {
+                    top.add(hit);
+                } else if (Hit.BEST_FIRST.compare(hit, top.peek()) < 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Hit.BEST_FIRST);
+        List<Object> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            result.add(ids[hit.document]);
+        }
+        return result;
+    }
+
+    /**
+     * @return 3 if the word is a whole word of the text, 2 if it starts a word, 1 if it is inside a word, otherwise 0
+     */
+    private static int score(String text, String word) {
+        int best = 0;
+        for (int i = text.indexOf(word); i >= 0 && best < 3; i = text.indexOf(word, i + 1)) {
+            boolean start = i == 0 || text.charAt(i - 1) == ' ';
+            boolean end = i + word.length() == text.length() || text.charAt(i + word.length()) == ' ';
+            int score = start ? (end ? 3 : 2) : (word.length() < 3 ? 0 : 1);
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    private void addDocument(Object id, String text) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            texts = Arrays.copyOf(texts, size * 2);
+        }
+        int document = size++;
+        ids[document] = id;
+        texts[document] = text;
+        documents.put(id, document);
+        textBytes += 40 + 2L * text.length();
+        for (String word : words(text)) {
+            addGram(key(PREFIX, word.charAt(0), (char) 0), document);
+            if (word.length() > 1) {
+                addGram(key(PREFIX, word.charAt(0), word.charAt(1)), document);
+            }
+            for (int i = 0; i + 2 < word.length(); i++) {
+                addGram(key(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2)), document);
+            }
+        }
+    }
+
+    private void addGram(long gram, int document) {
+        postings.computeIfAbsent(gram, key -> new Postings()).add(document);
+    }
+
+    private void removeDocument(int document) {
+        textBytes -= 40 + 2L * texts[document].length();
+        texts[document] = null;
+        ids[document] = null;
+        removed++;
+    }
+
+    /**
+     * Rebuilds the posting lists from the live documents if most documents are removed.
+     */
+    private void compactIfNeeded() {
+        if (removed < MIN_COMPACTION || removed < size - removed) {
+            return;
+        }
+        Object[] liveIds = ids;
+        String[] liveTexts = texts;
+        int liveSize = size;
+        postings = new HashMap<>();
+        documents = new HashMap<>();
+        ids = new Object[Math.max(1024, Integer.highestOneBit(liveSize - removed) << 1)];
+        texts = new String[ids.length];
+        size = 0;
+        removed = 0;
+        textBytes = 0;
+        for (int i = 0; i < liveSize; i++) {
+            if (liveTexts[i] != null) {
+                addDocument(liveIds[i], liveTexts[i]);
+            }
+        }
+    }
+
+    private static long[] queryGrams(String word) {
+        if (word.length() == 1) {
+            return new long[]{key(PREFIX, word.charAt(0), (char) 0)};
+        }
+        if (word.length() == 2) {
+            return new long[]{key(PREFIX, word.charAt(0), word.charAt(1))};
+        }
+        long[] grams = new long[word.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = key(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private static long key(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    private static String[] words(String text) {
+        return text.isEmpty() ? new String[0] : text.split(" ");
+    }
+
+    /**
+     * Lower case letters and digits without diacritics, words separated by single spaces.
+     */
+    static String normalize(CharSequence value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK
+                    && normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        int length = normalized.length();
+        return length > 0 && normalized.charAt(length - 1) == ' ' ? normalized.substring(0, length - 1) : normalized.toString();
+    }
+
+    /**
+     * @return number of live documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - removed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap of the index: posting lists with their map entries, texts, id arrays and the id map.
+     * The ids themselves are shared with the entities and not counted.
+     *
+     * @return estimated bytes
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings list : postings.values()) {
+                bytes += 16 + 4L * list.documents.length + 80;
+            }
+            bytes += 2 * (16 + 8L * ids.length);
+            bytes += textBytes;
+            bytes += 64L * documents.size();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Growing int array of document numbers in ascending order.
+     */
+    private static final class Postings {
+
+        private int[] documents = new int[2];
+        private int size;
+
+        /**
+         * Position of the first document not less than the given one, galloping from a previous position.
+         *
+         * @return position or size if all documents are less
+         */
+        private int seek(int document, int from) {
+            int bound = 1;
+            while (from + bound < size && documents[from + bound] < document) {
+                from += bound;
+                bound <<= 1;
+            }
+            int position = Arrays.binarySearch(documents, from, Math.min(from + bound + 1, size), document);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        /**
+         * Documents are added in ascending order, so a document adding the same gram twice is its last entry.
+         */
+        private void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size + (size >> 1) + 1);
+            }
+            documents[size++] = document;
+        }
+    }
+
+    private static final class Hit {
+
+        private static final Comparator<Hit> BEST_FIRST = Comparator.<Hit>comparingInt(hit -> -hit.score)
+                .thenComparingInt(hit -> hit.length)
+                .thenComparingInt(hit -> hit.document);
+
+        private final int document;
+        private final int score;
+        private final int length;
+
+        private Hit(int document, int score, int length) {
+            this.document = document;
+            this.score = score;
+            this.length = length;
+        }
+    }
+}
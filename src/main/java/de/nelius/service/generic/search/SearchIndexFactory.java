@@ -0,0 +1,89 @@
+package de.nelius.service.generic.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.startup.Warmup;
+import io.dropwizard.setup.Environment;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for {@link SearchIndex} and {@link IndexingCRUDRepository}.
+ * <p>
+ * properties:
+ * <p>
+ * search.enabled : indexes the fields of the configured entities for [resource]/_search : false
+ * search.fields.[entity] : indexed attributes of the entity, like forename and surname of person
+ *
+ * @author Christian Nelius
+ */
+public class SearchIndexFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexFactory.class);
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @NotNull
+    @JsonProperty
+    private Map<String, List<String>> fields = new HashMap<>();
+
+    /**
+     * Builds the index of an entity.
+     *
+     * @return index or null if search is disabled or no fields of the entity are configured
+     */
+    public SearchIndex build(String name, Environment environment) {
+        if (!enabled || fields.get(name) == null || fields.get(name).isEmpty()) {
+            return null;
+        }
+        return new SearchIndex(name, fields.get(name), environment.metrics());
+    }
+
+    /**
+     * Wraps the repository with an {@link IndexingCRUDRepository} if there is an index. All entities are indexed by a
+     * {@link Warmup} task after the start, so Jetty binds without waiting for them.
+     *
+     * @param searchIndex index of {@link #build(String, Environment)}
+     * @param warmup      warmup running the index build
+     * @return indexing or given repository
+     */
+    public <T, S extends Serializable> CRUDRepository<T, S> decorate(Class<T> domainClass, CRUDRepository<T, S> crudRepository,
+                                                                    SessionFactory sessionFactory, SearchIndex searchIndex, Warmup warmup) {
+        if (searchIndex == null) {
+            return crudRepository;
+        }
+        IndexingCRUDRepository<T, S> repository = new IndexingCRUDRepository<>(domainClass, crudRepository, sessionFactory, searchIndex);
+        warmup.addOnce("search." + searchIndex.getName(), () -> {
+            long start = System.nanoTime();
+            int indexed = repository.indexAll();
+            LOGGER.info("Indexed {} {} entities in {} ms, about {} KiB", indexed, searchIndex.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), searchIndex.estimatedBytes() / 1024);
+        });
+        return repository;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, List<String>> getFields() {
+        return fields;
+    }
+
+    public void setFields(Map<String, List<String>> fields) {
+        this.fields = fields;
+    }
+}
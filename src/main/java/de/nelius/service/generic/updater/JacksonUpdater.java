@@ -1,28 +1,60 @@
 package de.nelius.service.generic.updater;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Jackson implementation of {@link Updater} for generic dto <-> entity mapping.
  * <p>
  * Use with caution! Its just a basic concept.
+ * <p>
+ * Readers are cached per entity class and only bound to the updated entity per call.
  *
  * @author Christian Nelius
  */
 public class JacksonUpdater implements Updater {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * @param objectMapper mapper of the application
+     */
+    public JacksonUpdater(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
 
     @Override
     public <T> T update(T source, Map<String, Object> dto) {
         try {
-            return objectMapper.readerForUpdating(source).readValue(objectMapper.writeValueAsString(dto));
+            return readerForUpdating(source).readValue(objectMapper.writeValueAsString(dto));
         } catch (IOException e) {
             throw new UpdaterException(e);
         }
     }
 
+    @Override
+    public <T> T update(T source, InputStream dto) {
+        try {
+            return readerForUpdating(source).readValue(dto);
+        } catch (IOException e) {
+            throw new UpdaterException(e);
+        }
+    }
+
+    @Override
+    public void prepare(Class<?> type) {
+        readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
+    private ObjectReader readerForUpdating(Object source) {
+        return readers.computeIfAbsent(source.getClass(), objectMapper::readerFor).withValueToUpdate(source);
+    }
+
 }
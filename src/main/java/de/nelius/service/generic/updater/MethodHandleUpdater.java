@@ -0,0 +1,198 @@
+package de.nelius.service.generic.updater;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link Updater} that builds a setter plan with {@link MethodHandle}s once per entity class and applies
+ * the patch while parsing the request stream. No intermediate String or {@link Map} is created.
+ * <p>
+ * The properties are resolved like Jackson deserializes the entity: names of {@link com.fasterxml.jackson.annotation.JsonProperty}
+ * are used and {@link com.fasterxml.jackson.annotation.JsonIgnore}d properties are skipped. With a {@link SessionFactory}
+ * the identifier and the version of mapped entities are skipped as well, so a PUT of the full entity does not move it to
+ * another row or bypass the optimistic lock. Unknown properties fail like in {@link JacksonUpdater}.
+ *
+ * @author Christian Nelius
+ */
+public class MethodHandleUpdater implements Updater {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final ObjectMapper objectMapper;
+    private final SessionFactory sessionFactory;
+    private final ClassValue<Map<String, Setter>> plans = new ClassValue<Map<String, Setter>>() {
+        @Override
+        protected Map<String, Setter> computeValue(Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    public MethodHandleUpdater(ObjectMapper objectMapper) {
+        this(objectMapper, null);
+    }
+
+    /**
+     * @param sessionFactory mapping of the entities to skip their identifier and version or null
+     */
+    public MethodHandleUpdater(ObjectMapper objectMapper, SessionFactory sessionFactory) {
+        this.objectMapper = objectMapper;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public <T> T update(T source, Map<String, Object> dto) {
+        Map<String, Setter> plan = plans.get(source.getClass());
+        for (Map.Entry<String, Object> entry : dto.entrySet()) {
+            Setter setter = setter(plan, source, entry.getKey());
+            if (setter != Setter.SKIP) {
+                setter.set(source, objectMapper.convertValue(entry.getValue(), setter.type));
+            }
+        }
+        return source;
+    }
+
+    @Override
+    public <T> T update(T source, InputStream dto) {
+        Map<String, Setter> plan = plans.get(source.getClass());
+        try (JsonParser parser = objectMapper.getFactory().createParser(dto)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new UpdaterException("Expected JSON object for " + source.getClass().getSimpleName());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Setter setter = setter(plan, source, parser.getCurrentName());
+                setter.set(source, setter.read(parser, parser.nextToken()));
+            }
+            return source;
+        } catch (IOException e) {
+            throw new UpdaterException(e);
+        }
+    }
+
+    @Override
+    public void prepare(Class<?> type) {
+        plans.get(type);
+    }
+
+    private Setter setter(Map<String, Setter> plan, Object source, String property) {
+        Setter setter = plan.get(property);
+        if (setter == null) {
+            throw new UpdaterException("Unrecognized field \"" + property + "\" for " + source.getClass().getSimpleName());
+        }
+        return setter;
+    }
+
+    private Map<String, Setter> plan(Class<?> type) {
+        try {
+            Map<String, Setter> plan = new HashMap<>();
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BeanDescription description = objectMapper.getDeserializationConfig().introspect(objectMapper.constructType(type));
+            for (String ignored : description.getIgnoredPropertyNames()) {
+                plan.put(ignored, Setter.SKIP);
+            }
+            Set<String> managed = managedProperties(type);
+            for (BeanPropertyDefinition property : description.findProperties()) {
+                if (managed.contains(property.getInternalName())) {
+                    plan.put(property.getName(), Setter.SKIP);
+                } else if (property.hasSetter()) {
+                    Method method = property.getSetter().getAnnotated();
+                    JavaType propertyType = objectMapper.constructType(method.getGenericParameterTypes()[0]);
+                    plan.put(property.getName(), new Setter(lookup.unreflect(method).asType(SETTER_TYPE),
+                            propertyType, objectMapper.readerFor(propertyType)));
+                }
+            }
+            return Collections.unmodifiableMap(plan);
+        } catch (IllegalAccessException e) {
+            throw new UpdaterException(e);
+        }
+    }
+
+    /**
+     * @return names of the identifier and version attribute if the type or one of its super classes is a mapped entity
+     */
+    private Set<String> managedProperties(Class<?> type) {
+        Set<String> properties = new HashSet<>();
+        if (sessionFactory == null) {
+            return properties;
+        }
+        Map<String, EntityPersister> persisters = sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersisters();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            EntityPersister persister = persisters.get(current.getName());
+            if (persister != null) {
+                if (persister.getIdentifierPropertyName() != null) {
+                    properties.add(persister.getIdentifierPropertyName());
+                }
+                if (persister.isVersioned()) {
+                    properties.add(persister.getPropertyNames()[persister.getVersionProperty()]);
+                }
+                break;
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Setter handle of a property and the reader for its type.
+     */
+    private static class Setter {
+
+        /**
+         * Accepts and discards the value of an ignored, identifier or version property.
+         */
+        private static final Setter SKIP = new Setter(null, null, null);
+
+        private final MethodHandle handle;
+        private final JavaType type;
+        private final ObjectReader reader;
+
+        private Setter(MethodHandle handle, JavaType type, ObjectReader reader) {
+            this.handle = handle;
+            this.type = type;
+            this.reader = reader;
+        }
+
+        /**
+         * Reads scalar values of String properties directly from the parser and delegates everything else to Jackson.
+         */
+        private Object read(JsonParser parser, JsonToken token) throws IOException {
+            if (handle == null) {
+                parser.skipChildren();
+                return null;
+            }
+            if (type.getRawClass() == String.class && token.isScalarValue()) {
+                return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            }
+            return reader.readValue(parser);
+        }
+
+        private void set(Object target, Object value) {
+            if (handle == null) {
+                return;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw new UpdaterException(e);
+            }
+        }
+    }
+}
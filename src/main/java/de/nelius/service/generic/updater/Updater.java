@@ -1,6 +1,6 @@
 package de.nelius.service.generic.updater;
 
-import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 /**
@@ -12,4 +12,21 @@ public interface Updater {
 
     <T> T update(T source, Map<String, Object> dto);
 
+    /**
+     * Applies the JSON object read from the stream to the source.
+     *
+     * @param source entity to update
+     * @param dto    JSON object with the fields to update
+     * @return updated source
+     */
+    <T> T update(T source, InputStream dto);
+
+    /**
+     * Builds whatever the updater needs per type up front, so the first update of the type is not slower.
+     *
+     * @param type entity class
+     */
+    default void prepare(Class<?> type) {
+    }
+
 }
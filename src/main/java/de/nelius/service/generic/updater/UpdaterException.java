@@ -10,4 +10,8 @@ public class UpdaterException extends RuntimeException {
         super("Could not update entity!\nCause:", cause);
     }
 
+    public UpdaterException(String cause) {
+        super("Could not update entity!\nCause: " + cause);
+    }
+
 }
@@ -1,34 +1,124 @@
 package de.nelius.service.health;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheck;
 import de.nelius.service.generic.repository.CRUDRepository;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * {@link HealthCheck} for {@link javax.persistence.Entity} with use of {@link CRUDRepository}.
+ * <p>
+ * The database is probed on a schedule: a connection validation followed by a single row page per repository.
+ * {@link #check()} only returns the last probe result, so health requests never block on the database.
+ * A probe slower than the timeout, or a probe that does not finish at all, reports unhealthy.
  *
  * @author Christian Nelius
  */
-public class DbHealth extends HealthCheck {
+public class DbHealth extends HealthCheck implements Managed, Runnable {
+
+    private final Map<String, CRUDRepository<?, ?>> repositories = new LinkedHashMap<>();
+    private final Map<String, Timer> latencies = new LinkedHashMap<>();
+    private final SessionFactory sessionFactory;
+    private final ScheduledExecutorService executor;
+    private final MetricRegistry metricRegistry;
+    private final Duration refreshInterval;
+    private final Duration timeout;
+    private volatile Result result = Result.unhealthy("Database not probed yet");
+    private volatile long probedAt = System.currentTimeMillis();
+    private ScheduledFuture<?> schedule;
 
-    private List<CRUDRepository<?, ?>> repositories = new ArrayList<>();
+    public DbHealth(SessionFactory sessionFactory, ScheduledExecutorService executor, MetricRegistry metricRegistry,
+                    Duration refreshInterval, Duration timeout) {
+        this.sessionFactory = sessionFactory;
+        this.executor = executor;
+        this.metricRegistry = metricRegistry;
+        this.refreshInterval = refreshInterval;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Adds a repository to the probe. Has to be called before the application is started.
+     */
+    public void addRepository(String name, CRUDRepository<?, ?> repository) {
+        repositories.put(name, repository);
+        latencies.put(name, metricRegistry.timer(name(DbHealth.class, name, "latency")));
+    }
 
-    public DbHealth() {
+    @Override
+    public void start() {
+        schedule = executor.scheduleWithFixedDelay(this, 0, refreshInterval.toMilliseconds(), TimeUnit.MILLISECONDS);
     }
 
-    public DbHealth(List<CRUDRepository<?, ?>> repositories) {
-        this.repositories = repositories;
+    @Override
+    public void stop() {
+        if (schedule != null) {
+            schedule.cancel(true);
+        }
     }
 
-    public void addRepository(CRUDRepository<?, ?> repository) {
-        this.repositories.add(repository);
+    @Override
+    protected Result check() {
+        long age = System.currentTimeMillis() - probedAt;
+        if (age > refreshInterval.toMilliseconds() + timeout.toMilliseconds()) {
+            return Result.unhealthy("Database probe did not finish for %d ms", age);
+        }
+        return result;
     }
 
+    /**
+     * Probes the database and stores the result for {@link #check()}.
+     */
     @Override
-    protected Result check() throws Exception {
-        repositories.forEach(CRUDRepository::getAll);
-        return Result.healthy();
+    public void run() {
+        try {
+            result = probe();
+        } catch (RuntimeException e) {
+            result = Result.unhealthy(e);
+        }
+        probedAt = System.currentTimeMillis();
+    }
+
+    private Result probe() {
+        ResultBuilder builder = Result.builder().healthy();
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            ManagedSessionContext.bind(session);
+            int timeoutSeconds = (int) Math.max(1, timeout.toSeconds());
+            if (!session.doReturningWork(connection -> connection.isValid(timeoutSeconds))) {
+                return builder.unhealthy().withMessage("Database connection is not valid").build();
+            }
+            session.beginTransaction();
+            for (Map.Entry<String, CRUDRepository<?, ?>> repository : repositories.entrySet()) {
+                long start = System.nanoTime();
+                repository.getValue().getPage(null, 1);
+                long elapsed = System.nanoTime() - start;
+                latencies.get(repository.getKey()).update(elapsed, TimeUnit.NANOSECONDS);
+                builder.withDetail(repository.getKey() + "LatencyMs", TimeUnit.NANOSECONDS.toMillis(elapsed));
+                if (elapsed > timeout.toNanoseconds()) {
+                    builder.unhealthy().withMessage("Probe of %s took longer than %s", repository.getKey(), timeout);
+                }
+            }
+            return builder.build();
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            session.close();
+        }
     }
 }
@@ -0,0 +1,57 @@
+package de.nelius.service.health;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link DbHealth}.
+ * <p>
+ * properties:
+ * <p>
+ * dbHealth.refreshInterval : delay between two database probes : 10 seconds
+ * dbHealth.timeout : probes slower than this report unhealthy : 2 seconds
+ *
+ * @author Christian Nelius
+ */
+public class DbHealthFactory {
+
+    @NotNull
+    @JsonProperty
+    private Duration refreshInterval = Duration.seconds(10);
+
+    @NotNull
+    @JsonProperty
+    private Duration timeout = Duration.seconds(2);
+
+    /**
+     * Builds a {@link DbHealth} probing on its own single thread and manages it with the environment lifecycle.
+     * Register it as health check after adding the repositories.
+     */
+    public DbHealth build(SessionFactory sessionFactory, Environment environment) {
+        DbHealth dbHealth = new DbHealth(sessionFactory,
+                environment.lifecycle().scheduledExecutorService("db-health-%d", true).threads(1).build(),
+                environment.metrics(), refreshInterval, timeout);
+        environment.lifecycle().manage(dbHealth);
+        return dbHealth;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
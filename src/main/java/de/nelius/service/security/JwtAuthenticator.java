@@ -1,15 +1,26 @@
 package de.nelius.service.security;
 
-import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import de.nelius.service.security.user.User;
 import de.nelius.service.security.user.UserProvider;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Jwt implementation of {@link Authenticator}. Verifies the signature with HMAC256 algorithm and a secret and decodes the claims.
@@ -17,27 +28,67 @@ import java.util.Optional;
  * That's just an example. We could also use other {@link Algorithm} or a {@link java.security.KeyStore}.
  * <p>
  * In this case we start with subject claim but we can add all other oauth2 claims.
+ * <p>
+ * Verified tokens are cached by their SHA-256 digest until the exp claim or {@link JwtFactory#getCacheTtl()}
+ * is reached, whichever comes first.
  *
  * @author Christian Nelius
  */
 public class JwtAuthenticator implements Authenticator<String, User> {
 
-    private JwtFactory jwtFactory;
-    private UserProvider userProvider;
+    private final JWTVerifier verifier;
+    private final UserProvider userProvider;
+    private final Cache<HashCode, VerifiedUser> cache;
+    private final Meter hits;
+    private final Meter misses;
 
-    public JwtAuthenticator(JwtFactory jwtFactory, UserProvider userProvider) {
-        this.jwtFactory = jwtFactory;
+    public JwtAuthenticator(JwtFactory jwtFactory, UserProvider userProvider, MetricRegistry metricRegistry) {
+        this.verifier = jwtFactory.buildVerifier();
         this.userProvider = userProvider;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(jwtFactory.getCacheMaxSize())
+                .expireAfterWrite(jwtFactory.getCacheTtl().toMilliseconds(), TimeUnit.MILLISECONDS)
+                .build();
+        this.hits = metricRegistry.meter(name(JwtAuthenticator.class, "cache-hits"));
+        this.misses = metricRegistry.meter(name(JwtAuthenticator.class, "cache-misses"));
+        metricRegistry.register(name(JwtAuthenticator.class, "cache-size"), (Gauge<Long>) cache::size);
     }
 
     @Override
     public Optional<User> authenticate(String token) throws AuthenticationException {
+        HashCode key = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        VerifiedUser verifiedUser = cache.getIfPresent(key);
+        if (verifiedUser != null) {
+            if (verifiedUser.expiresAt > System.currentTimeMillis()) {
+                hits.mark();
+                return Optional.of(verifiedUser.user);
+            }
+            cache.invalidate(key);
+        }
+        misses.mark();
         try {
-            Algorithm algorithm = Algorithm.HMAC256(jwtFactory.getSecret());
-            JWTVerifier verifier = JWT.require(algorithm).withIssuer(jwtFactory.getIssuer()).build();
-            return Optional.ofNullable(userProvider.getUser(verifier.verify(token).getSubject()));
+            DecodedJWT jwt = verifier.verify(token);
+            User user = userProvider.getUser(jwt.getSubject());
+            if (user != null) {
+                cache.put(key, new VerifiedUser(user, jwt.getExpiresAt() == null ? Long.MAX_VALUE : jwt.getExpiresAt().getTime()));
+            }
+            return Optional.ofNullable(user);
         } catch (JWTVerificationException exception) {
             throw new AuthenticationException(exception);
         }
     }
+
+    /**
+     * Cache entry holding the resolved user and the exp claim of its token.
+     */
+    private static class VerifiedUser {
+
+        private final User user;
+        private final long expiresAt;
+
+        private VerifiedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
@@ -1,9 +1,15 @@
 package de.nelius.service.security;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.Date;
 
 /**
  * Configuration for {@link JwtAuthenticator}.
@@ -12,6 +18,8 @@ import javax.validation.constraints.NotNull;
  * <p>
  * jwt.issuer : token issuer : http://your-auth-server
  * jwt.secret : HS256 secret : YourSecret
+ * jwt.cacheTtl : max lifetime of a verified token in the cache : 5 minutes
+ * jwt.cacheMaxSize : max number of cached tokens : 10000
  *
  * @author Christian Nelius
  */
@@ -38,6 +46,39 @@ public class JwtFactory {
     @JsonProperty
     private String secret = null;
 
+    /**
+     * How long a verified token stays cached. Entries are evicted earlier when the token expires.
+     */
+    @NotNull
+    @JsonProperty
+    private Duration cacheTtl = Duration.minutes(5);
+
+    /**
+     * Maximum number of cached tokens.
+     */
+    @Min(0)
+    @JsonProperty
+    private long cacheMaxSize = 10000;
+
+    /**
+     * Builds the HMAC256 verifier for secret and issuer. The verifier is thread safe and should be reused.
+     *
+     * @return JWTVerifier
+     */
+    public JWTVerifier buildVerifier() {
+        return JWT.require(Algorithm.HMAC256(secret)).withIssuer(issuer).build();
+    }
+
+    /**
+     * Signs a HMAC256 token for the subject with secret and issuer, like the auth server does.
+     *
+     * @return signed token
+     */
+    public String sign(String subject, Duration expiresIn) {
+        return JWT.create().withIssuer(issuer).withSubject(subject)
+                .withExpiresAt(new Date(System.currentTimeMillis() + expiresIn.toMilliseconds())).sign(Algorithm.HMAC256(secret));
+    }
+
     public String getIssuer() {
         return issuer;
     }
@@ -53,4 +94,20 @@ public class JwtFactory {
     public void setSecret(String secret) {
         this.secret = secret;
     }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
 }
@@ -0,0 +1,71 @@
+package de.nelius.service.security.ratelimit;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of one limit, a token bucket per principal.
+ * <p>
+ * properties:
+ * <p>
+ * permits : tokens refilled per period : 100
+ * period : refill period : 1 second
+ * burst : capacity of the bucket, requests a principal can issue at once : permits
+ *
+ * @author Christian Nelius
+ */
+public class RateLimit {
+
+    @Min(1)
+    @JsonProperty
+    private int permits = 100;
+
+    @NotNull
+    @JsonProperty
+    private Duration period = Duration.seconds(1);
+
+    @Min(1)
+    @JsonProperty
+    private Integer burst;
+
+    /**
+     * @return nanos to refill one token
+     */
+    public long intervalNanos() {
+        return Math.max(1, period.toNanoseconds() / permits);
+    }
+
+    /**
+     * @return nanos to refill the whole bucket
+     */
+    public long capacityNanos() {
+        return intervalNanos() * (burst != null ? burst : permits);
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public void setPermits(int permits) {
+        this.permits = permits;
+    }
+
+    public Duration getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    public Integer getBurst() {
+        return burst;
+    }
+
+    public void setBurst(Integer burst) {
+        this.burst = burst;
+    }
+}
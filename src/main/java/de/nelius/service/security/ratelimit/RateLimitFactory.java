@@ -0,0 +1,111 @@
+package de.nelius.service.security.ratelimit;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import io.dropwizard.setup.Environment;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration for {@link RateLimitFilter}.
+ * <p>
+ * properties:
+ * <p>
+ * rateLimit.enabled : limits requests per principal : false
+ * rateLimit.maximumPrincipals : tracked principals per limit before full buckets are removed : 100000
+ * rateLimit.roles.[role] : {@link RateLimit} of the methods allowed for the role, like read and write
+ * rateLimit.endpoints.[HTTP method path] : {@link RateLimit} of one method instead of its role, like GET /person
+ *
+ * @author Christian Nelius
+ */
+public class RateLimitFactory {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(1)
+    @JsonProperty
+    private long maximumPrincipals = 100000;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Map<String, RateLimit> roles = new HashMap<>();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Map<String, RateLimit> endpoints = new HashMap<>();
+
+    /**
+     * Builds the {@link RateLimitFilter} of the configured limits and registers the admin task {@code rate-limits},
+     * which prints the available tokens per limit and principal.
+     *
+     * @return filter to register with Jersey or null if rate limiting is disabled
+     */
+    public RateLimitFilter build(Environment environment) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, RateLimiter> roleLimiters = rateLimiters("role.", roles, environment);
+        Map<String, RateLimiter> endpointLimiters = rateLimiters("endpoint.", endpoints, environment);
+        List<RateLimiter> rateLimiters = new ArrayList<>(roleLimiters.values());
+        rateLimiters.addAll(endpointLimiters.values());
+        environment.admin().addTask(new Task("rate-limits") {
+            @Override
+            public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+                for (RateLimiter rateLimiter : rateLimiters) {
+                    output.println(rateLimiter.getName() + ": " + rateLimiter.getAvailable());
+                }
+            }
+        });
+        return new RateLimitFilter(roleLimiters, endpointLimiters);
+    }
+
+    private Map<String, RateLimiter> rateLimiters(String prefix, Map<String, RateLimit> rateLimits, Environment environment) {
+        Map<String, RateLimiter> rateLimiters = new HashMap<>();
+        rateLimits.forEach((key, rateLimit) ->
+                rateLimiters.put(key, new RateLimiter(prefix + key, rateLimit, maximumPrincipals, environment.metrics())));
+        return rateLimiters;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumPrincipals() {
+        return maximumPrincipals;
+    }
+
+    public void setMaximumPrincipals(long maximumPrincipals) {
+        this.maximumPrincipals = maximumPrincipals;
+    }
+
+    public Map<String, RateLimit> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Map<String, RateLimit> roles) {
+        this.roles = roles;
+    }
+
+    public Map<String, RateLimit> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, RateLimit> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
@@ -0,0 +1,119 @@
+package de.nelius.service.security.ratelimit;
+
+import io.dropwizard.jersey.errors.ErrorMessage;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+import javax.annotation.Priority;
+import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers requests over the limit of their principal with 429 Too Many Requests and a Retry-After header.
+ * <p>
+ * Runs after authentication and authorization, so only tokens of permitted requests are taken. The limit of a resource
+ * method is resolved once: an endpoint limit for {@code <HTTP method> <path template>}, otherwise the limit of the role in
+ * {@link RolesAllowed}, or of {@code read} for GET and HEAD and {@code write} for all other methods if there is no annotation.
+ * Anonymous requests are limited per client address.
+ *
+ * @author Christian Nelius
+ */
+@Priority(Priorities.AUTHORIZATION + 1)
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private final Map<String, RateLimiter> roles;
+    private final Map<String, RateLimiter> endpoints;
+    private final Map<ResourceMethod, Resolved> resolved = new ConcurrentHashMap<>();
+
+    @Context
+    private HttpServletRequest httpServletRequest;
+
+    public RateLimitFilter(Map<String, RateLimiter> roles, Map<String, RateLimiter> endpoints) {
+        this.roles = roles;
+        this.endpoints = endpoints;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        ResourceMethod method = ((ContainerRequest) requestContext).getUriInfo().getMatchedResourceMethod();
+        if (method == null) {
+            return;
+        }
+        Resolved limit = resolved.get(method);
+        if (limit == null) {
+            limit = resolved.computeIfAbsent(method, key -> new Resolved(resolve(key)));
+        }
+        if (limit.rateLimiter == null) {
+            return;
+        }
+        Principal principal = requestContext.getSecurityContext().getUserPrincipal();
+        long wait = limit.rateLimiter.tryAcquire(principal != null ? principal.getName() : httpServletRequest.getRemoteAddr());
+        if (wait > 0) {
+            requestContext.abortWith(Response.status(TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfter(wait))
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorMessage(TOO_MANY_REQUESTS, "Rate limit " + limit.rateLimiter.getName() + " exceeded"))
+                    .build());
+        }
+    }
+
+    /**
+     * @param wait nanos until the next token
+     * @return seconds rounded up, at least one
+     */
+    static long retryAfter(long wait) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private RateLimiter resolve(ResourceMethod method) {
+        RateLimiter endpoint = endpoints.get(method.getHttpMethod() + " " + ("/" + path(method.getParent())).replaceAll("/+", "/"));
+        if (endpoint != null) {
+            return endpoint;
+        }
+        return roles.get(role(method));
+    }
+
+    private static String role(ResourceMethod method) {
+        Method handlingMethod = method.getInvocable().getHandlingMethod();
+        RolesAllowed rolesAllowed = handlingMethod.getAnnotation(RolesAllowed.class);
+        if (rolesAllowed == null) {
+            rolesAllowed = handlingMethod.getDeclaringClass().getAnnotation(RolesAllowed.class);
+        }
+        if (rolesAllowed != null && rolesAllowed.value().length > 0) {
+            return rolesAllowed.value()[0];
+        }
+        return HttpMethod.GET.equals(method.getHttpMethod()) || HttpMethod.HEAD.equals(method.getHttpMethod()) ? "read" : "write";
+    }
+
+    private static String path(Resource resource) {
+        return resource.getParent() == null ? resource.getPath() : path(resource.getParent()) + "/" + resource.getPath();
+    }
+
+    /**
+     * Resolved limit of a resource method, null for unlimited methods which a concurrent map can not hold.
+     */
+    private static class Resolved {
+
+        private final RateLimiter rateLimiter;
+
+        private Resolved(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
+    }
+}
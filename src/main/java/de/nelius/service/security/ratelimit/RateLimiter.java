@@ -0,0 +1,79 @@
+package de.nelius.service.security.ratelimit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * One configured limit with a {@link TokenBucket} per principal.
+ * <p>
+ * Buckets live in a {@link ConcurrentHashMap}, so lookups take no lock and principals only contend on their own bucket.
+ * If the maximum of principals is tracked, full buckets are removed, a new bucket would be full as well. This sweep runs
+ * at most once per refill of a bucket, so new principals can not make every request pay for it.
+ * Rejections are metered as {@code RateLimiter.<limit>.rejected}, tracked principals as {@code RateLimiter.<limit>.principals}.
+ *
+ * @author Christian Nelius
+ */
+public class RateLimiter {
+
+    private final String name;
+    private final long interval;
+    private final long capacity;
+    private final long maximumPrincipals;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong sweptAt = new AtomicLong(System.nanoTime());
+    private final Meter rejected;
+
+    public RateLimiter(String name, RateLimit rateLimit, long maximumPrincipals, MetricRegistry metricRegistry) {
+        this.name = name;
+        this.interval = rateLimit.intervalNanos();
+        this.capacity = rateLimit.capacityNanos();
+        this.maximumPrincipals = maximumPrincipals;
+        this.rejected = metricRegistry.meter(name(RateLimiter.class, name, "rejected"));
+        metricRegistry.register(name(RateLimiter.class, name, "principals"), (Gauge<Integer>) buckets::size);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a token of the principal.
+     *
+     * @return 0 if the request is allowed, otherwise nanos until the principal gets the next token
+     */
+    public long tryAcquire(String principal) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(principal);
+        if (bucket == null) {
+            long swept = sweptAt.get();
+            if (buckets.size() >= maximumPrincipals && now - swept > capacity && sweptAt.compareAndSet(swept, now)) {
+                buckets.values().removeIf(idle -> idle.isFull(now));
+            }
+            bucket = buckets.computeIfAbsent(principal, key -> new TokenBucket(now));
+        }
+        long wait = bucket.tryAcquire(now, interval, capacity);
+        if (wait > 0) {
+            rejected.mark();
+        }
+        return wait;
+    }
+
+    /**
+     * @return available tokens per tracked principal
+     */
+    public Map<String, Long> getAvailable() {
+        long now = System.nanoTime();
+        Map<String, Long> available = new LinkedHashMap<>();
+        buckets.forEach((principal, bucket) -> available.put(principal, bucket.available(now, interval, capacity)));
+        return available;
+    }
+}
@@ -0,0 +1,57 @@
+package de.nelius.service.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket of one principal.
+ * <p>
+ * Instead of a token count and a refill timestamp the bucket keeps a single value, the time at which it is full again.
+ * Taking a token moves this time one refill interval into the future, a request is rejected if the time would be more
+ * than the capacity of the bucket ahead. Refilling needs no timer and taking a token is one compare-and-set.
+ *
+ * @author Christian Nelius
+ */
+class TokenBucket {
+
+    private final AtomicLong fullAt;
+
+    TokenBucket(long now) {
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token.
+     *
+     * @param now      current {@link System#nanoTime()}
+     * @param interval nanos to refill one token
+     * @param capacity nanos to refill the whole bucket
+     * @return 0 if a token was taken, otherwise nanos until the next token is available
+     */
+    long tryAcquire(long now, long interval, long capacity) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return true if no token is taken at the time
+     */
+    boolean isFull(long now) {
+        return fullAt.get() <= now;
+    }
+
+    /**
+     * @return tokens available at the time
+     */
+    long available(long now, long interval, long capacity) {
+        return (capacity - Math.max(0, fullAt.get() - now)) / interval;
+    }
+}
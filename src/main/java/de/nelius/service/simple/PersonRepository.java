@@ -2,15 +2,26 @@ package de.nelius.service.simple;
 
 import de.nelius.service.entities.Person;
 import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.generic.repository.EntityQuery;
+import de.nelius.service.generic.repository.Page;
+import de.nelius.service.generic.repository.QueryTranslator;
 import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.query.Query;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Basic repository that extends {@link AbstractDAO}.
  * Implements {@link CRUDRepository} for {@link com.codahale.metrics.health.HealthCheck}.
+ * Uses the named queries of {@link Person}, which are parsed once when the session factory is built.
  * <p>
  * Used as middle layer.
  *
@@ -18,6 +29,12 @@ import java.util.List;
  */
 public class PersonRepository extends AbstractDAO<Person> implements CRUDRepository<Person, String> {
 
+    private static final int SCROLL_FETCH_SIZE = 500;
+    private static final int GET_MANY_BATCH_SIZE = 500;
+
+    private SessionFactory sessionFactory;
+    private QueryTranslator<Person> queryTranslator;
+
     /**
      * Creates a new DAO with a given session provider.
      *
@@ -25,23 +42,104 @@ public class PersonRepository extends AbstractDAO<Person> implements CRUDReposit
      */
     public PersonRepository(SessionFactory sessionFactory) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.queryTranslator = new QueryTranslator<>(Person.class, sessionFactory);
     }
 
     public List<Person> getAll() {
-        return list((Query<Person>) currentSession().createQuery("from Person"));
+        return list(currentSession().createNamedQuery("Person.getAll", Person.class));
+    }
+
+    public Page<Person, String> getPage(String after, int limit) {
+        Query<Person> query = after == null
+                ? currentSession().createNamedQuery("Person.firstPage", Person.class)
+                : currentSession().createNamedQuery("Person.nextPage", Person.class).setParameter("after", after);
+        List<Person> persons = list(query.setMaxResults(limit + 1));
+        if (persons.size() <= limit) {
+            return new Page<>(persons, null);
+        }
+        List<Person> page = new ArrayList<>(persons.subList(0, limit));
+        return new Page<>(page, page.get(limit - 1).getId());
+    }
+
+    public void scrollAll(Consumer<? super Person> consumer) {
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             ScrollableResults results = session.createNamedQuery("Person.firstPage", Person.class)
+                     .setFetchSize(SCROLL_FETCH_SIZE).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((Person) results.get(0));
+            }
+        }
+    }
+
+    public List<Person> find(EntityQuery query) {
+        return list(queryTranslator.entities(currentSession(), query));
+    }
+
+    public List<Map<String, Object>> findFields(EntityQuery query) {
+        return queryTranslator.fields(currentSession(), query);
     }
 
     public Person getOne(String id) {
         return get(id);
     }
 
+    public List<Person> getMany(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return currentSession().byMultipleIds(Person.class).withBatchSize(GET_MANY_BATCH_SIZE).multiLoad(new ArrayList<>(ids));
+    }
+
+    public Object getVersion(String id) {
+        return namedQuery("Person.version").setParameter("id", id).uniqueResult();
+    }
+
+    public long count() {
+        return currentSession().createNamedQuery("Person.count", Long.class).getSingleResult();
+    }
+
+    public boolean exists(String id) {
+        return !namedQuery("Person.exists").setParameter("id", id).setMaxResults(1).list().isEmpty();
+    }
+
     public Person save(Person person) {
         return persist(person);
     }
 
-    public boolean delete(String id) {
-        currentSession().delete(get(id));
-        return get(id) == null;
+    public List<String> saveAll(List<Person> persons) {
+        List<String> ids = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            ids.add(persist(person).getId());
+        }
+        currentSession().flush();
+        currentSession().clear();
+        return ids;
+    }
+
+    public int delete(String id) {
+        return namedQuery("Person.delete").setParameter("id", id).executeUpdate();
+    }
+
+    public int delete(String id, Object version) {
+        return namedQuery("Person.deleteVersion").setParameter("id", id).setParameter("version", version).executeUpdate();
+    }
+
+    public int deleteByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return namedQuery("Person.deleteByIds").setParameterList("ids", ids).executeUpdate();
+    }
+
+    public List<String> deleteAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> existing = currentSession().createNamedQuery("Person.existingIds", String.class)
+                .setParameterList("ids", ids).list();
+        deleteByIds(existing);
+        return existing;
     }
 
 }
@@ -1,97 +1,298 @@
 package de.nelius.service.simple;
 
-import com.codahale.metrics.annotation.Timed;
+import com.codahale.metrics.annotation.Metered;
 import de.nelius.service.entities.Person;
-import io.dropwizard.hibernate.UnitOfWork;
+import de.nelius.service.generic.changes.ChangeEventStream;
+import de.nelius.service.generic.changes.ChangeFeed;
+import de.nelius.service.generic.repository.CRUDRepository;
+import de.nelius.service.generic.repository.EntityQuery;
+import de.nelius.service.generic.repository.Page;
+import de.nelius.service.generic.resource.BulkProcessor;
+import de.nelius.service.generic.resource.EntityTags;
+import de.nelius.service.generic.resource.JacksonFormats;
+import de.nelius.service.generic.resource.JsonArrayStreamingOutput;
+import de.nelius.service.generic.resource.MultiGetResult;
+import de.nelius.service.generic.resource.UnitOfWorkExecutor;
+import de.nelius.service.generic.search.SearchIndex;
+import de.nelius.service.generic.updater.Updater;
 import io.dropwizard.jersey.PATCH;
-import org.eclipse.jetty.http.HttpStatus;
+import org.hibernate.SessionFactory;
 
 import javax.annotation.security.RolesAllowed;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Basic {@link org.glassfish.jersey.server.model.Resource} for {@link Person}.
+ * <p>
+ * All database work runs in a unit of work of the {@link UnitOfWorkExecutor}, either on the request thread
+ * or on the bounded database pool of the resource. Reads run in read-only sessions without transaction.
+ * The methods are {@code @Metered} for their request rates, the latency is timed by the executor.
  *
  * @author Christian Nelius
  */
 @Path("/person")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, JacksonFormats.APPLICATION_SMILE, JacksonFormats.APPLICATION_CBOR})
 public class PersonResource {
 
-    private PersonRepository personRepository;
+    private CRUDRepository<Person, String> personRepository;
+    private JacksonFormats formats;
+    private BulkProcessor<Person, String> bulkProcessor;
+    private Updater updater;
+    private UnitOfWorkExecutor executor;
+    private EntityTags<Person> entityTags;
+    private ChangeFeed changeFeed;
+    private SearchIndex searchIndex;
 
-    public PersonResource(PersonRepository personRepository) {
+    /**
+     * @param sessionFactory factory of the sessions, bulk requests commit their chunks in the current session
+     * @param changeFeed     feed of the person changes or null if the change feed is disabled
+     * @param searchIndex    index of the persons or null if search is disabled
+     */
+    public PersonResource(CRUDRepository<Person, String> personRepository, JacksonFormats formats, Updater updater, SessionFactory sessionFactory,
+                          UnitOfWorkExecutor executor, EntityTags<Person> entityTags, ChangeFeed changeFeed, SearchIndex searchIndex) {
         this.personRepository = personRepository;
+        this.changeFeed = changeFeed;
+        this.searchIndex = searchIndex;
+        this.executor = executor;
+        this.entityTags = entityTags;
+        this.formats = formats;
+        this.updater = updater;
+        this.bulkProcessor = new BulkProcessor<>(formats.getObjectMapper(), Person.class, personRepository, sessionFactory);
     }
 
+    /**
+     * Streams all persons if no limit is given. Otherwise returns one keyset {@link Page} after the given id.
+     * Filter, sort or fields parameters return the matching persons, see {@link EntityQuery}.
+     * Comma separated {@code ids} return a {@link MultiGetResult} of these persons.
+     */
     @GET
-    @Timed
-    @UnitOfWork
+    @Metered
     @RolesAllowed("read")
-    public List<Person> getAll() {
-        return personRepository.getAll();
+    public void getAll(@QueryParam("limit") @Min(1) Integer limit, @QueryParam("after") String after, @QueryParam("ids") List<String> ids,
+                       @Context UriInfo uriInfo, @Context HttpHeaders headers, @Suspended AsyncResponse response) {
+        executor.executeReadOnly(response, () -> {
+            if (!ids.isEmpty()) {
+                return MultiGetResult.of(MultiGetResult.split(ids), personRepository);
+            }
+            if (EntityQuery.isQuery(uriInfo.getQueryParameters())) {
+                EntityQuery query = EntityQuery.parse(uriInfo.getQueryParameters());
+                return query.getFields().isEmpty() ? personRepository.find(query) : personRepository.findFields(query);
+            }
+            if (limit == null) {
+                MediaType mediaType = formats.negotiate(headers.getAcceptableMediaTypes());
+                return Response.ok(new JsonArrayStreamingOutput<>(formats.getWriter(mediaType, Person.class), personRepository), mediaType).build();
+            }
+            return Response.ok(personRepository.getPage(after, Math.min(limit, Page.MAX_LIMIT))).build();
+        });
     }
 
     @GET
     @Path("{id}")
-    @Timed
-    @UnitOfWork
+    @Metered
     @RolesAllowed("read")
-    public Person get(@PathParam("id") String id) {
-        return personRepository.getOne(id);
+    public void get(@PathParam("id") String id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Context Request request,
+                    @Context HttpHeaders headers, @Suspended AsyncResponse response) {
+        MediaType mediaType = formats.negotiate(headers.getAcceptableMediaTypes());
+        executor.executeReadOnly(response, () -> {
+            if (ifNoneMatch != null) {
+                Response notModified = entityTags.evaluate(request, entityTags.ofVersion(personRepository.getVersion(id), mediaType));
+                if (notModified != null) {
+                    return notModified;
+                }
+            }
+            Person person = personRepository.getOne(id);
+            return person == null ? null : Response.ok(person, mediaType).tag(entityTags.of(person, mediaType)).build();
+        });
     }
 
+    /**
+     * Checks if the person exists without loading it.
+     */
+    @HEAD
+    @Path("{id}")
+    @Metered
+    @RolesAllowed("read")
+    public void exists(@PathParam("id") String id, @Suspended AsyncResponse response) {
+        executor.executeReadOnly(response, () -> personRepository.exists(id)
+                ? Response.ok().build() : Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * Streams the committed changes of persons as Server-Sent Events, see {@link ChangeEventStream}.
+     */
+    @GET
+    @Path("_changes")
+    @Produces(ChangeEventStream.TEXT_EVENT_STREAM)
+    @RolesAllowed("read")
+    public Response changes(@HeaderParam(ChangeEventStream.LAST_EVENT_ID) String lastEventId) {
+        if (changeFeed == null) {
+            throw new NotFoundException();
+        }
+        return ChangeEventStream.open(changeFeed, lastEventId);
+    }
+
+    /**
+     * Typeahead search of persons by the indexed fields, best matches first, see {@link SearchIndex}.
+     * Answers 503 until the index is built after the start.
+     */
+    @GET
+    @Path("_search")
+    @Metered
+    @RolesAllowed("read")
+    public void search(@QueryParam("q") String query, @QueryParam("limit") @Min(1) Integer limit, @Suspended AsyncResponse response) {
+        if (searchIndex == null) {
+            throw new NotFoundException();
+        }
+        if (query == null || query.trim().isEmpty()) {
+            throw new BadRequestException("q is required");
+        }
+        if (!searchIndex.isBuilt()) {
+            throw new ServiceUnavailableException("Search index of person is being built", 1L);
+        }
+        List<Object> ids = searchIndex.search(query, limit == null ? SearchIndex.DEFAULT_LIMIT : Math.min(limit, SearchIndex.MAX_LIMIT));
+        executor.executeReadOnly(response, () -> personRepository.getMany((List<String>) (List<?>) ids).stream()
+                .filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+
+    @GET
+    @Path("_count")
+    @Metered
+    @RolesAllowed("read")
+    public void count(@Suspended AsyncResponse response) {
+        executor.executeReadOnly(response, () -> Collections.singletonMap("count", personRepository.count()));
+    }
+
+    /**
+     * Multi-get of the ids in the body, for more ids than fit into a query string.
+     */
+    @POST
+    @Path("_mget")
+    @Consumes({MediaType.APPLICATION_JSON, JacksonFormats.APPLICATION_SMILE, JacksonFormats.APPLICATION_CBOR})
+    @Metered
+    @RolesAllowed("read")
+    public void getMany(@NotNull MultiGetResult.Request request, @Suspended AsyncResponse response) {
+        List<String> ids = MultiGetResult.check(request.getIds());
+        executor.executeReadOnly(response, () -> MultiGetResult.of(ids, personRepository));
+    }
+
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, JacksonFormats.APPLICATION_SMILE, JacksonFormats.APPLICATION_CBOR})
+    @Metered
+    @RolesAllowed("write")
+    public void create(@NotNull @Valid Person person, @Suspended AsyncResponse response) {
+        executor.execute(response, () -> personRepository.save(person));
+    }
+
+    /**
+     * Saves and deletes persons in batches. Accepts a JSON array or newline delimited JSON, see {@link BulkProcessor}.
+     */
     @POST
-    @Timed
-    @UnitOfWork
+    @Path("_bulk")
+    @Consumes({MediaType.APPLICATION_JSON, BulkProcessor.APPLICATION_NDJSON})
+    @Metered
     @RolesAllowed("write")
-    public Person create(@NotNull @Valid Person person) {
-        return personRepository.save(person);
+    public void bulk(InputStream body, @Suspended AsyncResponse response) {
+        executor.execute(response, () -> bulkProcessor.process(body));
     }
 
     @PUT
     @Path("{id}")
-    @Timed
-    @UnitOfWork
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
     @RolesAllowed("write")
-    public Person updatePut(@PathParam("id") String id, @NotNull @Valid Map<String, Object> body) {
-        return update(id, body);
+    public void updatePut(@PathParam("id") String id, @NotNull InputStream body, @Context Request request,
+                          @Context HttpHeaders headers, @Suspended AsyncResponse response) {
+        MediaType mediaType = formats.negotiate(headers.getAcceptableMediaTypes());
+        executor.execute(response, () -> update(id, body, request, mediaType));
     }
 
 
     @PATCH
     @Path("{id}")
-    @Timed
-    @UnitOfWork
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
     @RolesAllowed("write")
-    public Person updatePatch(@PathParam("id") String id, @NotNull @Valid Map<String, Object> body) {
-        return update(id, body);
+    public void updatePatch(@PathParam("id") String id, @NotNull InputStream body, @Context Request request,
+                            @Context HttpHeaders headers, @Suspended AsyncResponse response) {
+        MediaType mediaType = formats.negotiate(headers.getAcceptableMediaTypes());
+        executor.execute(response, () -> update(id, body, request, mediaType));
     }
 
+    /**
+     * Deletes all persons with the given ids in one statement and returns the number of deleted persons.
+     */
     @DELETE
-    @Path("{id}")
-    @Timed
-    @UnitOfWork
+    @Metered
     @RolesAllowed("write")
-    public Response delete(@PathParam("id") String id) {
-        if (personRepository.delete(id)) {
-            return Response.noContent().build();
+    public void deleteAll(@QueryParam("id") List<String> ids, @Suspended AsyncResponse response) {
+        if (ids.isEmpty()) {
+            throw new BadRequestException("at least one id is required");
         }
-        return Response.status(Response.Status.NOT_FOUND).build();
+        executor.execute(response, () -> Collections.singletonMap("deleted", personRepository.deleteByIds(new HashSet<>(ids))));
     }
 
-    private Person update(String id, Map<String, Object> body) {
-        Person source = personRepository.getOne(id);
-        source.setForename(body.containsKey("forename") ? body.get("forename").toString() : source.getForename());
-        source.setSurname(body.containsKey("surname") ? body.get("surname").toString() : source.getSurname());
-        source.setBirthDate(body.containsKey("birthDate") ? body.get("birthDate").toString() : source.getBirthDate());
-        return personRepository.save(source);
+    @DELETE
+    @Path("{id}")
+    @Metered
+    @RolesAllowed("write")
+    public void delete(@PathParam("id") String id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, @Context Request request,
+                       @Suspended AsyncResponse response) {
+        executor.execute(response, () -> {
+            if (ifMatch != null) {
+                Object version = personRepository.getVersion(id);
+                if (version == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                Response preconditionFailed = entityTags.evaluateWrite(request, version);
+                if (preconditionFailed != null) {
+                    return preconditionFailed;
+                }
+                if (personRepository.delete(id, version) > 0) {
+                    return Response.noContent().build();
+                }
+                // updated between the version check and the delete
+                return Response.status(personRepository.exists(id) ? Response.Status.PRECONDITION_FAILED : Response.Status.NOT_FOUND).build();
+            }
+            if (personRepository.delete(id) > 0) {
+                return Response.noContent().build();
+            }
+            return Response.status(Response.Status.NOT_FOUND).build();
+        });
+    }
+
+    /**
+     * Updates the person if the If-Match header, if any, matches its version and returns it with the incremented version.
+     *
+     * @param mediaType negotiated format of the response and its ETag
+     */
+    private Response update(String id, InputStream body, Request request, MediaType mediaType) {
+        Person person = personRepository.getOne(id);
+        if (person == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        Response preconditionFailed = entityTags.evaluateWrite(request, entityTags.getVersion(person));
+        if (preconditionFailed != null) {
+            return preconditionFailed;
+        }
+        Person saved = personRepository.save(updater.update(person, body));
+        return Response.ok(saved, mediaType).tag(entityTags.flushed(saved, mediaType)).build();
     }
 
 }
@@ -0,0 +1,56 @@
+package de.nelius.service.startup;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.setup.Environment;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for {@link Warmup}.
+ * <p>
+ * properties:
+ * <p>
+ * startup.warmup : warms the request path before the warmup health check reports healthy : true
+ * startup.warmupIterations : runs of every warmup task : 200
+ *
+ * @author Christian Nelius
+ */
+public class StartupFactory {
+
+    @JsonProperty
+    private boolean warmup = true;
+
+    @Min(1)
+    @JsonProperty
+    private int warmupIterations = 200;
+
+    /**
+     * Builds a {@link Warmup} running on its own single thread and manages it with the environment lifecycle.
+     * If the warmup is disabled only the tasks added with {@link Warmup#addOnce(String, Warmup.Task)} are run
+     * and the check reports healthy right after them.
+     * Register it as health check after adding the tasks.
+     */
+    public Warmup buildWarmup(SessionFactory sessionFactory, Environment environment) {
+        Warmup warmup = new Warmup(sessionFactory, environment.lifecycle().executorService("warmup-%d").minThreads(1).maxThreads(1).build(),
+                environment.metrics(), this.warmup ? warmupIterations : 0);
+        environment.lifecycle().manage(warmup);
+        return warmup;
+    }
+
+    public boolean isWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(boolean warmup) {
+        this.warmup = warmup;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+    }
+}
@@ -0,0 +1,66 @@
+package de.nelius.service.startup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+import io.dropwizard.setup.Environment;
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Times the phases of the application startup, from the start of the JVM until Jetty accepts connections.
+ * <p>
+ * Every call of {@link #phase(String)} ends a phase, which started with the previous call or with the JVM. When the
+ * server is started the last phase {@code jetty} is recorded, covering Jersey initialization, managed objects and
+ * binding the connectors. The report is logged once and every phase is registered as gauge
+ * {@code StartupReport.<phase>} in milliseconds, together with {@code StartupReport.total}.
+ *
+ * @author Christian Nelius
+ */
+public class StartupReport implements ServerLifecycleListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private long mark = jvmStart;
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Ends the current phase.
+     *
+     * @param name name of the phase
+     */
+    public synchronized void phase(String name) {
+        long now = System.currentTimeMillis();
+        phases.put(name, now - mark);
+        mark = now;
+    }
+
+    /**
+     * Reports the phases when the server is started.
+     */
+    public void register(Environment environment) {
+        metricRegistry = environment.metrics();
+        environment.lifecycle().addServerLifecycleListener(this);
+    }
+
+    @Override
+    public synchronized void serverStarted(Server server) {
+        phase("jetty");
+        long total = mark - jvmStart;
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            long millis = phase.getValue();
+            metricRegistry.register(name(StartupReport.class, phase.getKey()), (Gauge<Long>) () -> millis);
+        }
+        metricRegistry.register(name(StartupReport.class, "total"), (Gauge<Long>) () -> total);
+        LOGGER.info("Started in {} ms, phases in ms: {}", total, phases);
+    }
+}
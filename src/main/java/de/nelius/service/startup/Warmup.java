@@ -0,0 +1,138 @@
+package de.nelius.service.startup;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheck;
+import io.dropwizard.lifecycle.Managed;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Warms the JIT and the caches of the request path after the start and reports as readiness {@link HealthCheck}.
+ * <p>
+ * The tasks run in the background, so Jetty binds without waiting for them, and the check stays unhealthy until
+ * every task ran the configured number of iterations. Every iteration runs in its own read-only session, like a
+ * request does, which is rolled back afterwards. A failing task is logged and skipped, warming up is best effort.
+ * Tasks added with {@link #addOnce(String, Task)} build state like an index, they run once before the others and also
+ * if warming up is disabled.
+ * Iterations are timed per task as {@code Warmup.<task>}.
+ *
+ * @author Christian Nelius
+ */
+public class Warmup extends HealthCheck implements Managed, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Warmup.class);
+
+    /**
+     * Work of one warmup iteration.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        void run() throws Exception;
+    }
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final Set<String> once = new HashSet<>();
+    private final SessionFactory sessionFactory;
+    private final ExecutorService executor;
+    private final MetricRegistry metricRegistry;
+    private final int iterations;
+    private volatile Result result = Result.unhealthy("Warming up");
+
+    public Warmup(SessionFactory sessionFactory, ExecutorService executor, MetricRegistry metricRegistry, int iterations) {
+        this.sessionFactory = sessionFactory;
+        this.executor = executor;
+        this.metricRegistry = metricRegistry;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Adds a task. Has to be called before the application is started.
+     */
+    public void add(String name, Task task) {
+        tasks.put(name, task);
+    }
+
+    /**
+     * Adds a task that runs exactly once. Has to be called before the application is started.
+     */
+    public void addOnce(String name, Task task) {
+        tasks.put(name, task);
+        once.add(name);
+    }
+
+    @Override
+    public void start() {
+        executor.execute(this);
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    protected Result check() {
+        return result;
+    }
+
+    /**
+     * Runs all tasks and reports healthy afterwards.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        List<String> failed = new ArrayList<>();
+        List<Map.Entry<String, Task>> ordered = new ArrayList<>(tasks.entrySet());
+        ordered.sort((first, second) -> Boolean.compare(!once.contains(first.getKey()), !once.contains(second.getKey())));
+        for (Map.Entry<String, Task> task : ordered) {
+            Timer timer = metricRegistry.timer(name(Warmup.class, task.getKey()));
+            int runs = once.contains(task.getKey()) ? 1 : iterations;
+            try {
+                for (int i = 0; i < runs && !Thread.currentThread().isInterrupted(); i++) {
+                    try (Timer.Context ignored = timer.time()) {
+                        runInSession(task.getValue());
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Warmup task {} failed", task.getKey(), e);
+                failed.add(task.getKey());
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info("Warmed up {} tasks with {} iterations in {} ms", tasks.size(), iterations, elapsed);
+        result = failed.isEmpty()
+                ? Result.healthy("Warmed up in %d ms", elapsed)
+                : Result.healthy("Warmed up in %d ms, failed tasks: %s", elapsed, failed);
+    }
+
+    private void runInSession(Task task) throws Exception {
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            ManagedSessionContext.bind(session);
+            session.beginTransaction();
+            task.run();
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package de.nelius.service.generic.changes;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading, overwrite detection and the resume bounds of a {@link ChangeFeed} with a capacity of 4.
+ *
+ * @author Christian Nelius
+ */
+public class ChangeFeedTest {
+
+    private MetricRegistry metricRegistry;
+    private ChangeFeed changeFeed;
+    private long start;
+
+    @Before
+    public void setUp() {
+        metricRegistry = new MetricRegistry();
+        changeFeed = changeFeed(4);
+        start = changeFeed.getSequence();
+    }
+
+    private ChangeFeed changeFeed(int capacity) {
+        ChangeFeedFactory changeFeedFactory = new ChangeFeedFactory();
+        changeFeedFactory.setCapacity(capacity);
+        changeFeedFactory.setMaximumSubscribers(2);
+        return new ChangeFeed("person", changeFeedFactory, Runnable::run, new ObjectMapper(), metricRegistry);
+    }
+
+    private static List<Object> ids(List<ChangeEvent> events) {
+        return events.stream().map(ChangeEvent::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void readsPublishedEventsInOrder() {
+        changeFeed.publish(ChangeEvent.Type.SAVED, Arrays.asList("1", "2"));
+        changeFeed.publish(ChangeEvent.Type.DELETED, Collections.singletonList("1"));
+
+        List<ChangeEvent> events = changeFeed.read(start, 10);
+
+        assertEquals(Arrays.asList("1", "2", "1"), ids(events));
+        assertEquals(ChangeEvent.Type.DELETED, events.get(2).getType());
+        assertEquals(start + 3, events.get(2).getSequence());
+        assertEquals(start + 3, changeFeed.getSequence());
+    }
+
+    @Test
+    public void writesTheFrameOnPublish() {
+        changeFeed.publish(ChangeEvent.Type.SAVED, Collections.singletonList("1"));
+
+        String frame = new String(changeFeed.read(start, 1).get(0).getFrame(), StandardCharsets.UTF_8);
+
+        assertTrue(frame.startsWith("id: " + (start + 1) + "\nevent: change\ndata: {"));
+        assertTrue(frame.endsWith("}\n\n"));
+    }
+
+    @Test
+    public void readsUpToTheLimitAndContinuesAfterTheCursor() {
+        changeFeed.publish(ChangeEvent.Type.SAVED, Arrays.asList("1", "2", "3"));
+
+        List<ChangeEvent> first = changeFeed.read(start, 2);
+        List<ChangeEvent> rest = changeFeed.read(first.get(1).getSequence(), 10);
+
+        assertEquals(Arrays.asList("1", "2"), ids(first));
+        assertEquals(Collections.singletonList("3"), ids(rest));
+        assertEquals(Collections.emptyList(), changeFeed.read(rest.get(0).getSequence(), 10));
+    }
+
+    @Test
+    public void readsNothingBeforeThePublish() {
+        assertEquals(Collections.emptyList(), changeFeed.read(start, 10));
+    }
+
+    @Test
+    public void detectsOverwrittenEvents() {
+        changeFeed.publish(ChangeEvent.Type.SAVED, Arrays.asList("1", "2", "3", "4"));
+        assertEquals(4, changeFeed.read(start, 10).size());
+
+        changeFeed.publish(ChangeEvent.Type.SAVED, Collections.singletonList("5"));
+
+        assertNull(changeFeed.read(start, 10));
+        assertEquals(1, metricRegistry.meter(name(ChangeFeed.class, "person", "resets")).getCount());
+        assertEquals(Arrays.asList("2", "3", "4", "5"), ids(changeFeed.read(start + 1, 10)));
+    }
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() {
+        metricRegistry = new MetricRegistry();
+        ChangeFeed rounded = changeFeed(5);
+        long after = rounded.getSequence();
+        rounded.publish(ChangeEvent.Type.SAVED, Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8"));
+
+        assertEquals(8, rounded.read(after, 10).size());
+        assertTrue(rounded.canResume(after));
+
+        rounded.publish(ChangeEvent.Type.SAVED, Collections.singletonList("9"));
+
+        assertNull(rounded.read(after, 10));
+        assertFalse(rounded.canResume(after));
+    }
+
+    @Test
+    public void resumesOnlyWithinTheCapacityOfThisRun() {
+        assertTrue(changeFeed.canResume(start));
+        assertFalse(changeFeed.canResume(start - 1));
+        assertFalse(changeFeed.canResume(start + 1));
+
+        changeFeed.publish(ChangeEvent.Type.SAVED, Arrays.asList("1", "2", "3", "4"));
+
+        assertTrue(changeFeed.canResume(start));
+        assertTrue(changeFeed.canResume(start + 4));
+        assertFalse(changeFeed.canResume(start + 5));
+
+        changeFeed.publish(ChangeEvent.Type.SAVED, Collections.singletonList("5"));
+
+        assertFalse(changeFeed.canResume(start));
+        assertTrue(changeFeed.canResume(start + 1));
+        assertFalse(changeFeed.canResume(0));
+    }
+
+    @Test
+    public void limitsTheSubscribers() {
+        assertTrue(changeFeed.subscribe());
+        assertTrue(changeFeed.subscribe());
+        assertFalse(changeFeed.subscribe());
+
+        changeFeed.unsubscribe();
+
+        assertTrue(changeFeed.subscribe());
+    }
+}
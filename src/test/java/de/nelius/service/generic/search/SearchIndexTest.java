@@ -0,0 +1,151 @@
+package de.nelius.service.generic.search;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests ranking, changes and compaction of {@link SearchIndex}.
+ *
+ * @author Christian Nelius
+ */
+public class SearchIndexTest {
+
+    private SearchIndex searchIndex;
+
+    @Before
+    public void setUp() {
+        searchIndex = new SearchIndex("person", Arrays.asList("forename", "surname"), new MetricRegistry());
+    }
+
+    @Test
+    public void ranksWholeWordBeforePrefixBeforeInfix() {
+        searchIndex.put(1, Arrays.asList("Joanna", "Lee"));
+        searchIndex.put(2, Arrays.asList("Annabelle", "Smith"));
+        searchIndex.put(3, Arrays.asList("Anna", "Berg"));
+
+        assertEquals(Arrays.asList(3, 2, 1), searchIndex.search("anna", 10));
+    }
+
+    @Test
+    public void ranksShorterTextsFirst() {
+        searchIndex.put(1, Arrays.asList("Anna Maria", "Berg"));
+        searchIndex.put(2, Arrays.asList("Anna", "Berg"));
+
+        assertEquals(Arrays.asList(2, 1), searchIndex.search("anna", 10));
+    }
+
+    @Test
+    public void matchesEveryWordOfTheQuery() {
+        searchIndex.put(1, Arrays.asList("Anna", "Berg"));
+        searchIndex.put(2, Arrays.asList("Anna", "Smith"));
+
+        assertEquals(Collections.singletonList(1), searchIndex.search("berg anna", 10));
+        assertEquals(Collections.emptyList(), searchIndex.search("anna lee", 10));
+    }
+
+    @Test
+    public void matchesShortWordsAtTheStartOfAWord() {
+        searchIndex.put(1, Arrays.asList("Bjorn", "Lee"));
+        searchIndex.put(2, Arrays.asList("Jonas", "Berg"));
+
+        assertEquals(Collections.singletonList(2), searchIndex.search("jo", 10));
+        assertEquals(Arrays.asList(1, 2), searchIndex.search("b", 10));
+    }
+
+    @Test
+    public void doesNotMatchGramsOfDifferentWords() {
+        searchIndex.put(1, Arrays.asList("Anna", "Berg"));
+
+        assertEquals(Collections.emptyList(), searchIndex.search("nab", 10));
+    }
+
+    @Test
+    public void ignoresCaseAndDiacritics() {
+        searchIndex.put(1, Arrays.asList("Jürgen", "Müller"));
+
+        assertEquals(Collections.singletonList(1), searchIndex.search("MULLER", 10));
+        assertEquals(Collections.singletonList(1), searchIndex.search("jür", 10));
+    }
+
+    @Test
+    public void limitsTheResults() {
+        for (int i = 0; i < 20; i++) {
+            searchIndex.put(i, Arrays.asList("Anna", "Berg"));
+        }
+
+        assertEquals(5, searchIndex.search("anna", 5).size());
+    }
+
+    @Test
+    public void replacesTheDocumentOfAnId() {
+        searchIndex.put(1, Arrays.asList("Anna", "Berg"));
+        searchIndex.put(1, Arrays.asList("Jonas", "Berg"));
+
+        assertEquals(Collections.emptyList(), searchIndex.search("anna", 10));
+        assertEquals(Collections.singletonList(1), searchIndex.search("jonas", 10));
+        assertEquals(1, searchIndex.size());
+    }
+
+    @Test
+    public void removesDocuments() {
+        searchIndex.put(1, Arrays.asList("Anna", "Berg"));
+        searchIndex.put(2, Arrays.asList("Anna", "Smith"));
+        searchIndex.remove(1);
+        searchIndex.remove(3);
+
+        assertEquals(Collections.singletonList(2), searchIndex.search("anna", 10));
+        assertEquals(1, searchIndex.size());
+    }
+
+    @Test
+    public void compactsWhenMostDocumentsAreRemoved() {
+        for (int i = 0; i < 4000; i++) {
+            searchIndex.put(i, Arrays.asList("Name" + i, "Surname"));
+        }
+        long full = searchIndex.estimatedBytes();
+        for (int i = 0; i < 3000; i++) {
+            searchIndex.remove(i);
+        }
+
+        assertEquals(1000, searchIndex.size());
+        assertTrue(searchIndex.estimatedBytes() < full / 2);
+        assertEquals(Collections.emptyList(), searchIndex.search("name42", 10));
+        assertEquals(Collections.singletonList(3042), searchIndex.search("name3042", 10));
+        assertEquals(10, searchIndex.search("surname", 10).size());
+    }
+
+    @Test
+    public void compactsDocumentsReplacedOften() {
+        for (int i = 0; i < 3000; i++) {
+            searchIndex.put(1, Arrays.asList("Name" + i, "Surname"));
+        }
+
+        assertEquals(1, searchIndex.size());
+        assertEquals(Collections.singletonList(1), searchIndex.search("name2999", 10));
+        assertEquals(Collections.emptyList(), searchIndex.search("name1000", 10));
+    }
+
+    @Test
+    public void keepsChangesCommittedWhileBuilding() {
+        assertFalse(searchIndex.isBuilt());
+        searchIndex.startBuild();
+        searchIndex.put(1, Arrays.asList("Jonas", "Berg"));
+        searchIndex.remove(2);
+        searchIndex.putIfUnchanged(1, Arrays.asList("Anna", "Berg"));
+        searchIndex.putIfUnchanged(2, Arrays.asList("Anna", "Smith"));
+        searchIndex.putIfUnchanged(3, Arrays.asList("Anna", "Lee"));
+        searchIndex.finishBuild();
+
+        assertTrue(searchIndex.isBuilt());
+        assertEquals(Collections.singletonList(3), searchIndex.search("anna", 10));
+        assertEquals(Collections.singletonList(1), searchIndex.search("jonas", 10));
+    }
+}
@@ -0,0 +1,116 @@
+package de.nelius.service.security.ratelimit;
+
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests burst, refill and the Retry-After of {@link TokenBucket} with a limit of 10 permits per second and a burst of 3.
+ *
+ * @author Christian Nelius
+ */
+public class TokenBucketTest {
+
+    private static final long START = 1_000_000_000_000L;
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long interval;
+    private long capacity;
+    private TokenBucket bucket;
+
+    @Before
+    public void setUp() {
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setPermits(10);
+        rateLimit.setPeriod(Duration.seconds(1));
+        rateLimit.setBurst(3);
+        interval = rateLimit.intervalNanos();
+        capacity = rateLimit.capacityNanos();
+        bucket = new TokenBucket(START);
+    }
+
+    @Test
+    public void derivesIntervalAndCapacityFromTheLimit() {
+        assertEquals(100 * MILLI, interval);
+        assertEquals(300 * MILLI, capacity);
+    }
+
+    @Test
+    public void allowsTheBurstAtOnce() {
+        assertTrue(bucket.isFull(START));
+        assertEquals(3, bucket.available(START, interval, capacity));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(START, interval, capacity));
+        }
+
+        assertEquals(100 * MILLI, bucket.tryAcquire(START, interval, capacity));
+        assertEquals(0, bucket.available(START, interval, capacity));
+        assertFalse(bucket.isFull(START));
+    }
+
+    @Test
+    public void rejectionsTakeNoToken() {
+        for (int i = 0; i < 10; i++) {
+            bucket.tryAcquire(START, interval, capacity);
+        }
+
+        assertEquals(0, bucket.tryAcquire(START + 100 * MILLI, interval, capacity));
+    }
+
+    @Test
+    public void refillsOneTokenPerInterval() {
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(START, interval, capacity);
+        }
+
+        assertEquals(40 * MILLI, bucket.tryAcquire(START + 60 * MILLI, interval, capacity));
+        assertEquals(0, bucket.tryAcquire(START + 100 * MILLI, interval, capacity));
+        assertEquals(100 * MILLI, bucket.tryAcquire(START + 100 * MILLI, interval, capacity));
+        assertEquals(2, bucket.available(START + 300 * MILLI, interval, capacity));
+    }
+
+    @Test
+    public void refillsNoMoreThanTheBurst() {
+        assertEquals(0, bucket.tryAcquire(START, interval, capacity));
+
+        long later = START + TimeUnit.MINUTES.toNanos(1);
+        assertTrue(bucket.isFull(later));
+        assertEquals(3, bucket.available(later, interval, capacity));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(later, interval, capacity));
+        }
+        assertTrue(bucket.tryAcquire(later, interval, capacity) > 0);
+    }
+
+    @Test
+    public void retryAfterRoundsTheWaitUpToSeconds() {
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(START, interval, capacity);
+        }
+
+        assertEquals(1, RateLimitFilter.retryAfter(bucket.tryAcquire(START, interval, capacity)));
+        assertEquals(1, RateLimitFilter.retryAfter(1));
+        assertEquals(1, RateLimitFilter.retryAfter(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(2, RateLimitFilter.retryAfter(TimeUnit.SECONDS.toNanos(1) + 1));
+        assertEquals(3, RateLimitFilter.retryAfter(TimeUnit.MILLISECONDS.toNanos(2500)));
+    }
+
+    @Test
+    public void retryAfterOfASlowLimitIsTheRefillOfOneToken() {
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setPermits(1);
+        rateLimit.setPeriod(Duration.minutes(1));
+        TokenBucket slow = new TokenBucket(START);
+
+        assertEquals(0, slow.tryAcquire(START, rateLimit.intervalNanos(), rateLimit.capacityNanos()));
+        long wait = slow.tryAcquire(START + TimeUnit.SECONDS.toNanos(15), rateLimit.intervalNanos(), rateLimit.capacityNanos());
+
+        assertEquals(45, RateLimitFilter.retryAfter(wait));
+    }
+}